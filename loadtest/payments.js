@@ -0,0 +1,64 @@
+// Throughput / latency comparison for platform vs virtual threads.
+//
+// Start the service with loadtest/loadtest.properties so the per-subject payment-read and
+// payment-history limits don't turn the run into a 429 benchmark:
+//
+//   java -jar target/payment-service-*.jar --spring.config.additional-location=file:loadtest/loadtest.properties
+//   k6 run -e BASE_URL=http://localhost:8083 -e TOKEN=<jwt> -e ORDER_ID=<existing order> \
+//          --summary-export=target/k6-platform.json loadtest/payments.js
+//
+// Run once with VIRTUAL_THREADS_ENABLED=false and once with true against the same data,
+// then compare http_reqs (rate) and http_req_duration p(99) per endpoint. The run fails if
+// any request is rate limited, since those numbers would not be comparable.
+import http from 'k6/http';
+import { check } from 'k6';
+import { Counter } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8083';
+const TOKEN = __ENV.TOKEN;
+const ORDER_ID = __ENV.ORDER_ID || 'order_abc';
+
+const rateLimited = new Counter('rate_limited');
+
+export const options = {
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    scenarios: {
+        reads: {
+            executor: 'ramping-arrival-rate',
+            startRate: 50,
+            timeUnit: '1s',
+            preAllocatedVUs: 200,
+            maxVUs: 2000,
+            stages: [
+                { target: 200, duration: '1m' },
+                { target: 800, duration: '2m' },
+                { target: 800, duration: '2m' },
+            ],
+        },
+    },
+    thresholds: {
+        'http_req_duration{endpoint:status}': ['p(99)<500'],
+        'http_req_duration{endpoint:history}': ['p(99)<800'],
+        rate_limited: ['count==0'],
+    },
+};
+
+const params = (endpoint) => ({
+    headers: { Authorization: `Bearer ${TOKEN}` },
+    tags: { endpoint },
+});
+
+export default function () {
+    const status = http.get(`${BASE_URL}/api/payment/status/order/${ORDER_ID}`, params('status'));
+    record(status, 'status');
+
+    const history = http.get(`${BASE_URL}/api/payment/me/payments?size=20`, params('history'));
+    record(history, 'history');
+}
+
+function record(res, endpoint) {
+    if (res.status === 429) {
+        rateLimited.add(1, { endpoint });
+    }
+    check(res, { [`${endpoint} 200`]: (r) => r.status === 200 });
+}
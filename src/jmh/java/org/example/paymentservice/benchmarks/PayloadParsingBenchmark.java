@@ -0,0 +1,51 @@
+package org.example.paymentservice.benchmarks;
+
+import com.stripe.model.Event;
+import org.example.paymentservice.services.WebhookProcessingService;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing work done after verification: building the org.json tree that
+ * handleRazorpayEvent walks, and the Gson-backed Stripe event model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PayloadParsingBenchmark {
+
+    @Param({"small", "large"})
+    public String size;
+
+    private String razorpayPayload;
+    private String stripePayload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        razorpayPayload = Payloads.razorpay(size);
+        stripePayload = Payloads.stripe(size);
+    }
+
+    @Benchmark
+    public JSONObject razorpayParse() {
+        return new JSONObject(razorpayPayload);
+    }
+
+    @Benchmark
+    public String razorpayParseAndExtractOrderId() {
+        JSONObject json = new JSONObject(razorpayPayload);
+        return WebhookProcessingService.razorpayOrderId(json);
+    }
+
+    @Benchmark
+    public Event stripeParse() {
+        return WebhookProcessingService.parseStripeEvent(stripePayload);
+    }
+
+    @Benchmark
+    public String stripeParseAndExtractOrderId() {
+        return WebhookProcessingService.stripeOrderId(WebhookProcessingService.parseStripeEvent(stripePayload));
+    }
+}
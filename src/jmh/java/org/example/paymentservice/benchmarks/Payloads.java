@@ -0,0 +1,34 @@
+package org.example.paymentservice.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Webhook bodies captured from Stripe and Razorpay test mode (identifiers rewritten),
+ * in a small and a large variant, under {@code src/jmh/resources/payloads}.
+ */
+final class Payloads {
+
+    private Payloads() {}
+
+    static String razorpay(String size) {
+        return load("razorpay-payment-link-paid-" + size + ".json");
+    }
+
+    static String stripe(String size) {
+        return load("stripe-checkout-session-completed-" + size + ".json");
+    }
+
+    private static String load(String name) {
+        try (InputStream in = Payloads.class.getResourceAsStream("/payloads/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing benchmark payload " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.paymentservice.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.paymentservice.configs.CompactRedisSerializer;
+import org.example.paymentservice.dtos.PaymentPageDto;
+import org.example.paymentservice.dtos.PaymentResponseDto;
+import org.example.paymentservice.dtos.TokenIntrospectionResponseDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode cost of the Redis value serializers selectable via {@code cache.serializer},
+ * for the DTOs we actually cache. Encoded sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"jdk", "json", "smile"})
+    public String format;
+
+    @Param({"token", "page"})
+    public String payload;
+
+    private RedisSerializer<Object> serializer;
+    private Object value;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serializer = switch (format) {
+            case "jdk" -> new JdkSerializationRedisSerializer();
+            case "json" -> new GenericJackson2JsonRedisSerializer(CompactRedisSerializer.typedMapper(new ObjectMapper()));
+            default -> new CompactRedisSerializer();
+        };
+        value = "token".equals(payload) ? token() : page(20);
+        encoded = serializer.serialize(value);
+        System.out.printf("%n[size] %s/%s = %d bytes%n", format, payload, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializer.deserialize(encoded);
+    }
+
+    private static TokenIntrospectionResponseDTO token() {
+        TokenIntrospectionResponseDTO dto = new TokenIntrospectionResponseDTO();
+        dto.setActive(true);
+        dto.setSub("user-7f3c2a91-4b8e-4d2a-9c61-0e5f1d2b3a4c");
+        dto.setEmail("jane.doe@example.com");
+        dto.setRoles(new ArrayList<>(List.of("USER", "MERCHANT")));
+        dto.setScopes(new ArrayList<>(List.of("payment:read", "payment:write", "profile")));
+        dto.setExp(1_893_456_000L);
+        return dto;
+    }
+
+    private static PaymentPageDto page(int size) {
+        List<PaymentResponseDto> items = new ArrayList<>(size);
+        LocalDateTime createdAt = LocalDateTime.of(2025, 5, 16, 12, 30);
+        for (int i = 0; i < size; i++) {
+            items.add(new PaymentResponseDto("order_" + (100_000 + i), "cs_test_a1B2c3D4e5F6g7H8i9J0" + i,
+                    i % 3 == 0 ? "FAILED" : "SUCCEEDED", null, BigDecimal.valueOf(5_000L + i * 125L),
+                    "INR", i % 2 == 0 ? "stripe" : "razorpay", createdAt.minusMinutes(i * 7L)));
+        }
+        return new PaymentPageDto(items, "MjAyNS0wNS0xNlQxMjozMDowMHw0Mg", size);
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.paymentservice.benchmarks;
+
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Event;
+import com.stripe.net.Webhook;
+import org.apache.commons.codec.binary.Hex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.paymentservice.security.RazorpaySignatureVerifier;
+import org.example.paymentservice.utils.RazorpayWebhookUtils;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signature verification done on every inbound webhook before anything else runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WebhookVerificationBenchmark {
+
+    private static final String RAZORPAY_SECRET = "bench_razorpay_webhook_secret";
+    private static final String STRIPE_SECRET = "whsec_bench_stripe_webhook_secret";
+    // Generous tolerance so long runs keep exercising the success path
+    private static final long STRIPE_TOLERANCE_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    @Param({"small", "large"})
+    public String size;
+
+    private String razorpayPayload;
+    private String razorpaySignature;
+    private RazorpaySignatureVerifier razorpayVerifier;
+    private String stripePayload;
+    private String stripeSignatureHeader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        razorpayPayload = Payloads.razorpay(size);
+        razorpaySignature = hmacHex(RAZORPAY_SECRET, razorpayPayload);
+        razorpayVerifier = new RazorpaySignatureVerifier(RAZORPAY_SECRET, List.of(), 64, new SimpleMeterRegistry());
+
+        stripePayload = Payloads.stripe(size);
+        long timestamp = System.currentTimeMillis() / 1000;
+        stripeSignatureHeader = "t=" + timestamp + ",v1=" + hmacHex(STRIPE_SECRET, timestamp + "." + stripePayload);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public boolean razorpayVerifyLegacy() {
+        return RazorpayWebhookUtils.verifyWebhookSignature(razorpayPayload, razorpaySignature, RAZORPAY_SECRET);
+    }
+
+    @Benchmark
+    public boolean razorpayVerify() {
+        return razorpayVerifier.verify(razorpayPayload, razorpaySignature);
+    }
+
+    @Benchmark
+    public Event stripeConstructEvent() throws SignatureVerificationException {
+        return Webhook.constructEvent(stripePayload, stripeSignatureHeader, STRIPE_SECRET, STRIPE_TOLERANCE_SECONDS);
+    }
+
+    private static String hmacHex(String secret, String payload) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return Hex.encodeHexString(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.paymentservice.services;
+
+import org.example.paymentservice.dtos.PaymentResponseDto;
+import org.example.paymentservice.models.Payment;
+import org.example.paymentservice.models.PaymentStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity-to-DTO mapping behind /me/payments pages and exports. Lives in this package
+ * because {@code mapToResponseDto} is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaymentMappingBenchmark {
+
+    @Param({"20", "500"})
+    public int rows;
+
+    private List<Payment> payments;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payments = new ArrayList<>(rows);
+        LocalDateTime createdAt = LocalDateTime.of(2025, 5, 16, 12, 30);
+        for (int i = 0; i < rows; i++) {
+            Payment payment = new Payment();
+            payment.setId((long) i + 1);
+            payment.setOrderId("order_" + (100_000 + i));
+            payment.setUserId("user-7f3c2a91");
+            payment.setUserEmail("jane.doe@example.com");
+            payment.setPaymentProvider(i % 2 == 0 ? "stripe" : "razorpay");
+            payment.setAmount(5_000L + i * 125L);
+            payment.setCurrency("INR");
+            payment.setStatus(i % 3 == 0 ? PaymentStatus.FAILED : PaymentStatus.SUCCEEDED);
+            payment.setExternalPaymentId("cs_test_a1B2c3D4e5F6g7H8i9J0" + i);
+            payment.setCreatedAt(createdAt.minusMinutes(i * 7L));
+            payments.add(payment);
+        }
+    }
+
+    @Benchmark
+    public List<PaymentResponseDto> mapPage() {
+        List<PaymentResponseDto> out = new ArrayList<>(payments.size());
+        for (Payment payment : payments) {
+            out.add(PaymentStatusServiceImpl.mapToResponseDto(payment));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.paymentservice.adapters;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exponentially weighted moving averages of call latency and error rate for one gateway.
+ * Each completed call moves the averages by {@code alpha} towards its own outcome, so recent
+ * calls dominate. The averages only move when the gateway is called, so the routing policies
+ * keep sending it a share of exploratory traffic ({@code payment.gateway.routing.explore-ratio});
+ * once it has recovered, a handful of those successes is enough to win traffic back.
+ */
+public class GatewayHealth {
+
+    private final double alpha;
+    // A lock rather than synchronized: contended monitors pin virtual threads on JDK 21
+    private final ReentrantLock lock = new ReentrantLock();
+    private double latencyMs;
+    private double errorRate;
+    private long samples;
+
+    public GatewayHealth(double alpha) {
+        this.alpha = alpha;
+    }
+
+    public void record(long latencyNanos, boolean success) {
+        double millis = latencyNanos / 1_000_000.0;
+        double error = success ? 0.0 : 1.0;
+        lock.lock();
+        try {
+            if (samples == 0) {
+                latencyMs = millis;
+                errorRate = error;
+            } else {
+                latencyMs += alpha * (millis - latencyMs);
+                errorRate += alpha * (error - errorRate);
+            }
+            samples++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double latencyMs() {
+        lock.lock();
+        try {
+            return latencyMs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double errorRate() {
+        lock.lock();
+        try {
+            return errorRate;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long samples() {
+        lock.lock();
+        try {
+            return samples;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.paymentservice.adapters;
+
+import java.util.List;
+
+/**
+ * Picks a gateway for requests that did not name one. Implementations are Spring beans and
+ * are selected by {@link #name()} through {@code payment.gateway.routing.policy}.
+ */
+public interface GatewayRoutingPolicy {
+
+    String name();
+
+    /**
+     * @param candidates healthy gateways that support the request's currency, never empty
+     */
+    ResilientPaymentGateway choose(List<ResilientPaymentGateway> candidates);
+}
@@ -0,0 +1,51 @@
+package org.example.paymentservice.adapters;
+
+import org.example.paymentservice.configs.GatewayRoutingProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lowest EWMA latency wins, with errors inflating the score. Gateways with too few samples
+ * score zero so they get traffic and a measurement. A {@code explore-ratio} share of requests
+ * goes to a random other gateway instead: a gateway's averages only move when it gets calls,
+ * so without this a gateway that lost once would never be measured again and never recover.
+ */
+@Component
+public class LatencyRoutingPolicy implements GatewayRoutingPolicy {
+
+    private final GatewayRoutingProperties properties;
+
+    public LatencyRoutingPolicy(GatewayRoutingProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public String name() {
+        return "latency";
+    }
+
+    @Override
+    public ResilientPaymentGateway choose(List<ResilientPaymentGateway> candidates) {
+        ResilientPaymentGateway best = candidates.stream()
+                .min(Comparator.comparingDouble(this::score))
+                .orElseThrow();
+        if (candidates.size() > 1 && ThreadLocalRandom.current().nextDouble() < properties.getExploreRatio()) {
+            List<ResilientPaymentGateway> others = candidates.stream()
+                    .filter(gateway -> gateway != best)
+                    .toList();
+            return others.get(ThreadLocalRandom.current().nextInt(others.size()));
+        }
+        return best;
+    }
+
+    private double score(ResilientPaymentGateway gateway) {
+        GatewayHealth health = gateway.getHealth();
+        if (health.samples() < properties.getMinSamples()) {
+            return 0;
+        }
+        return health.latencyMs() * (1 + properties.getErrorPenalty() * health.errorRate());
+    }
+}
@@ -4,6 +4,11 @@ import org.example.paymentservice.dtos.PaymentRequestDto;
 import org.example.paymentservice.dtos.PaymentResponseDto;
 
 public interface PaymentGateway {
+    /**
+     * Provider name as stored on payments and used for webhooks, e.g. "stripe".
+     */
+    String getName();
+
     /**
      * Creates a hosted payment link for the given payment details.
      * @param paymentRequest the details needed to create the link.
@@ -1,38 +1,122 @@
 package org.example.paymentservice.adapters;
 
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.example.paymentservice.adapters.razorpay.RazorpayPaymentGateway;
 import org.example.paymentservice.adapters.stripe.StripePaymentGateway;
+import org.example.paymentservice.configs.GatewayRoutingProperties;
 import org.example.paymentservice.dtos.PaymentRequestDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 @Component
 public class PaymentGatewayFactory {
 
-    private final StripePaymentGateway stripePaymentGateway;
-    private final RazorpayPaymentGateway razorpayPaymentGateway;
+    private static final Logger logger = LoggerFactory.getLogger(PaymentGatewayFactory.class);
+
+    public static final String ANY_GATEWAY = "any";
+
+    private final Map<String, ResilientPaymentGateway> gateways = new LinkedHashMap<>();
+    private final GatewayRoutingProperties routingProperties;
+    private final GatewayRoutingPolicy routingPolicy;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${payment.gateway.failover.enabled:true}")
+    private boolean failoverEnabled;
 
     @Autowired
     public PaymentGatewayFactory(StripePaymentGateway stripePaymentGateway,
-                                 RazorpayPaymentGateway razorpayPaymentGateway) {
-        this.stripePaymentGateway = stripePaymentGateway;
-        this.razorpayPaymentGateway = razorpayPaymentGateway;
+                                 RazorpayPaymentGateway razorpayPaymentGateway,
+                                 CircuitBreakerRegistry circuitBreakerRegistry,
+                                 BulkheadRegistry bulkheadRegistry,
+                                 GatewayRoutingProperties routingProperties,
+                                 List<GatewayRoutingPolicy> routingPolicies,
+                                 MeterRegistry meterRegistry) {
+        this.routingProperties = routingProperties;
+        this.meterRegistry = meterRegistry;
+        Map<String, GatewayRoutingPolicy> policies = routingPolicies.stream()
+                .collect(Collectors.toMap(GatewayRoutingPolicy::name, Function.identity()));
+        this.routingPolicy = policies.get(routingProperties.getPolicy());
+        if (routingPolicy == null) {
+            throw new IllegalStateException("Unknown payment.gateway.routing.policy: " + routingProperties.getPolicy()
+                    + " (available: " + policies.keySet() + ")");
+        }
+
+        for (PaymentGateway gateway : new PaymentGateway[]{stripePaymentGateway, razorpayPaymentGateway}) {
+            String name = gateway.getName();
+            GatewayHealth health = new GatewayHealth(routingProperties.getEwmaAlpha());
+            gateways.put(name, new ResilientPaymentGateway(gateway, circuitBreakerRegistry.circuitBreaker(name),
+                    bulkheadRegistry.bulkhead(name), health, meterRegistry));
+            Gauge.builder("payment.gateway.ewma.latency", health, GatewayHealth::latencyMs)
+                    .tag("gateway", name)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("payment.gateway.ewma.error_rate", health, GatewayHealth::errorRate)
+                    .tag("gateway", name)
+                    .register(meterRegistry);
+        }
     }
 
     /**
      * Returns the proper PaymentGateway implementation based on the gateway string.
      *
-     * Additional selection logic (such as based on load or traffic) can be added here.
+     * A blank gateway or "any" is routed by the configured {@link GatewayRoutingPolicy} among
+     * the available gateways that support the currency. A named gateway is used as is unless
+     * its circuit is open or its bulkhead is full, in which case another available gateway for
+     * the currency is returned (unless {@code payment.gateway.failover.enabled=false}); callers
+     * should record {@link PaymentGateway#getName()} as the provider.
      */
     public PaymentGateway getPaymentGateway(PaymentRequestDto paymentRequest) {
-        String gateway = paymentRequest.getGateway();
-        if ("stripe".equalsIgnoreCase(gateway)) {
-            return stripePaymentGateway;
-        } else if ("razorpay".equalsIgnoreCase(gateway)) {
-            return razorpayPaymentGateway;
-        } else {
-            throw new IllegalArgumentException("Invalid payment gateway: " + gateway);
+        String requested = paymentRequest.getGateway() == null ? "" : paymentRequest.getGateway().trim().toLowerCase();
+        String currency = paymentRequest.getCurrency();
+
+        if (requested.isEmpty() || ANY_GATEWAY.equals(requested)) {
+            List<ResilientPaymentGateway> eligible = gateways.values().stream()
+                    .filter(gateway -> routingProperties.supports(gateway.getName(), currency))
+                    .toList();
+            if (eligible.isEmpty()) {
+                throw new IllegalArgumentException("No payment gateway supports currency " + currency);
+            }
+            List<ResilientPaymentGateway> available = eligible.stream()
+                    .filter(ResilientPaymentGateway::isAvailable)
+                    .toList();
+            // Nothing healthy: still pick one and let it fail fast
+            ResilientPaymentGateway chosen = routingPolicy.choose(available.isEmpty() ? eligible : available);
+            return record(chosen, "routed");
         }
+
+        ResilientPaymentGateway gateway = gateways.get(requested);
+        if (gateway == null) {
+            throw new IllegalArgumentException("Invalid payment gateway: " + paymentRequest.getGateway());
+        }
+        if (!failoverEnabled || gateway.isAvailable()) {
+            return record(gateway, "requested");
+        }
+        for (ResilientPaymentGateway candidate : gateways.values()) {
+            if (candidate != gateway && candidate.isAvailable()
+                    && routingProperties.supports(candidate.getName(), currency)) {
+                logger.warn("🔀 {} gateway unavailable, routing orderId={} to {}",
+                        requested, paymentRequest.getOrderId(), candidate.getName());
+                return record(candidate, "failover");
+            }
+        }
+        // Nothing healthy: let the requested gateway fail fast
+        return record(gateway, "requested");
     }
-}
 
+    private ResilientPaymentGateway record(ResilientPaymentGateway gateway, String reason) {
+        meterRegistry.counter("payment.gateway.routing", "gateway", gateway.getName(), "reason", reason).increment();
+        return gateway;
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.paymentservice.adapters;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.paymentservice.dtos.PaymentRequestDto;
+import org.example.paymentservice.dtos.PaymentResponseDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a gateway call inside its own bulkhead (fixed number of concurrent calls, no waiting)
+ * and circuit breaker. A FAILED response counts as a breaker failure just like an exception,
+ * since the adapters turn provider errors into FAILED responses. When either guard rejects
+ * the call a FAILED response is returned immediately instead of tying up the request thread.
+ */
+public class ResilientPaymentGateway implements PaymentGateway {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientPaymentGateway.class);
+
+    private final PaymentGateway delegate;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final GatewayHealth health;
+    private final MeterRegistry meterRegistry;
+
+    public ResilientPaymentGateway(PaymentGateway delegate, CircuitBreaker circuitBreaker,
+                                   Bulkhead bulkhead, GatewayHealth health, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.health = health;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public GatewayHealth getHealth() {
+        return health;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    public boolean isAvailable() {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        boolean breakerAllows = state == CircuitBreaker.State.CLOSED || state == CircuitBreaker.State.HALF_OPEN;
+        return breakerAllows && bulkhead.getMetrics().getAvailableConcurrentCalls() > 0;
+    }
+
+    @Override
+    public PaymentResponseDto createPaymentLink(PaymentRequestDto paymentRequest) {
+        if (!bulkhead.tryAcquirePermission()) {
+            return rejected("bulkhead_full", getName() + " gateway is busy");
+        }
+        try {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                return rejected("circuit_open", getName() + " gateway is unavailable");
+            }
+            long start = System.nanoTime();
+            PaymentResponseDto response;
+            try {
+                response = delegate.createPaymentLink(paymentRequest);
+            } catch (RuntimeException ex) {
+                long elapsed = System.nanoTime() - start;
+                circuitBreaker.onError(elapsed, TimeUnit.NANOSECONDS, ex);
+                health.record(elapsed, false);
+                latency("error").record(elapsed, TimeUnit.NANOSECONDS);
+                throw ex;
+            }
+
+            long elapsed = System.nanoTime() - start;
+            if ("FAILED".equalsIgnoreCase(response.getStatus())) {
+                logger.warn("⚠️ {} gateway call failed for orderId={}: {}", getName(),
+                        paymentRequest.getOrderId(), response.getMessage());
+                circuitBreaker.onError(elapsed, TimeUnit.NANOSECONDS, new IllegalStateException(response.getMessage()));
+                health.record(elapsed, false);
+                latency("failed").record(elapsed, TimeUnit.NANOSECONDS);
+            } else {
+                circuitBreaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+                health.record(elapsed, true);
+                latency("success").record(elapsed, TimeUnit.NANOSECONDS);
+            }
+            return response;
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+
+    private PaymentResponseDto rejected(String reason, String message) {
+        meterRegistry.counter("payment.gateway.rejected", "gateway", getName(), "reason", reason).increment();
+        logger.warn("⛔ {}", message);
+        return new PaymentResponseDto(null, null, "FAILED", message, null, null, getName(), null);
+    }
+
+    private Timer latency(String outcome) {
+        return Timer.builder("payment.gateway.latency")
+                .tag("gateway", getName())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.paymentservice.adapters;
+
+import org.example.paymentservice.configs.GatewayRoutingProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random split by the configured {@code payment.gateway.routing.weights}, each weight scaled
+ * down by the gateway's EWMA error rate. The scale never drops below {@code explore-ratio}, so a
+ * gateway whose error rate hit 1 still gets the calls it needs to recover.
+ */
+@Component
+public class WeightedRoutingPolicy implements GatewayRoutingPolicy {
+
+    private final GatewayRoutingProperties properties;
+
+    public WeightedRoutingPolicy(GatewayRoutingProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public String name() {
+        return "weighted";
+    }
+
+    @Override
+    public ResilientPaymentGateway choose(List<ResilientPaymentGateway> candidates) {
+        double[] weights = new double[candidates.size()];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            ResilientPaymentGateway gateway = candidates.get(i);
+            int configured = properties.getWeights().getOrDefault(gateway.getName(), 1);
+            weights[i] = configured * Math.max(1 - gateway.getHealth().errorRate(), properties.getExploreRatio());
+            total += weights[i];
+        }
+        if (total <= 0) {
+            return candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+        }
+        double pick = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < weights.length; i++) {
+            pick -= weights[i];
+            if (pick < 0) {
+                return candidates.get(i);
+            }
+        }
+        return candidates.get(candidates.size() - 1);
+    }
+}
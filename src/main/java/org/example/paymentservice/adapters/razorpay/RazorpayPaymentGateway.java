@@ -12,6 +12,11 @@ public class RazorpayPaymentGateway implements PaymentGateway {
     @Autowired
     private RazorpayService razorpayService;
 
+    @Override
+    public String getName() {
+        return "razorpay";
+    }
+
     @Override
     public PaymentResponseDto createPaymentLink(PaymentRequestDto paymentRequest) {
         String orderId = paymentRequest.getOrderId();
@@ -3,7 +3,6 @@ package org.example.paymentservice.adapters.razorpay;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Recover;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
@@ -12,10 +11,11 @@ public class RazorpayService {
 
     private static final Logger logger = LoggerFactory.getLogger(RazorpayService.class);
 
+    // Short retries only: the circuit breaker and bulkhead around the gateway handle outages
     @Retryable(
             value = Exception.class,
-            maxAttempts = 3,
-            backoff = @Backoff(delay = 2000, multiplier = 2)
+            maxAttemptsExpression = "${payment.gateway.retry.max-attempts:2}",
+            backoff = @Backoff(delayExpression = "${payment.gateway.retry.backoff-ms:200}", multiplier = 2)
     )
     public String createPaymentLink(String orderId, long amount, String currency) throws Exception {
         logger.info("➡️ Creating Razorpay payment link for Order: {}", orderId);
@@ -25,10 +25,4 @@ public class RazorpayService {
 
         return "rzp_test_link_" + orderId; // Placeholder link
     }
-
-    @Recover
-    public String fallback(Exception ex, String orderId, long amount, String currency) {
-        logger.error("🔥 Razorpay link creation failed after retries: {}", ex.getMessage());
-        return null;
-    }
 }
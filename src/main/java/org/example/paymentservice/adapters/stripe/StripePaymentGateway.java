@@ -24,12 +24,26 @@ public class StripePaymentGateway implements PaymentGateway {
     @Value("${stripe.cancel.url}")
     private String stripeCancelUrl;
 
+    // The SDK defaults (30s connect / 80s read) would hold a bulkhead slot far too long
+    @Value("${stripe.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
+    @Value("${stripe.read-timeout-ms:10000}")
+    private int readTimeoutMs;
+
     @Autowired
     private StripeService stripeService;
 
     @PostConstruct
     public void init() {
         Stripe.apiKey = stripeApiKey;
+        Stripe.setConnectTimeout(connectTimeoutMs);
+        Stripe.setReadTimeout(readTimeoutMs);
+    }
+
+    @Override
+    public String getName() {
+        return "stripe";
     }
 
     @Override
@@ -68,6 +82,7 @@ public class StripePaymentGateway implements PaymentGateway {
             responseDto.setPaymentId(session.getId());
             responseDto.setStatus("LINK_CREATED");
             responseDto.setMessage("Stripe payment link generated successfully");
+            responseDto.setProvider("stripe");
             return responseDto;
 
         } catch (StripeException e) {
@@ -8,7 +8,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Recover;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
@@ -20,21 +19,16 @@ public class StripeService {
     @Value("${stripe.api.key}")
     private String stripeApiKey;
 
+    // Short retries only: the circuit breaker and bulkhead around the gateway handle outages
     @Retryable(
             value = Exception.class,
-            maxAttempts = 3,
-            backoff = @Backoff(delay = 2000, multiplier = 2)
+            maxAttemptsExpression = "${payment.gateway.retry.max-attempts:2}",
+            backoff = @Backoff(delayExpression = "${payment.gateway.retry.backoff-ms:200}", multiplier = 2)
     )
     public Session createSession(SessionCreateParams params) throws Exception {
         Stripe.apiKey = stripeApiKey;
         log.info("➡️ Creating Stripe Checkout Session...");
         return Session.create(params);
     }
-
-    @Recover
-    public Session fallback(Exception ex, SessionCreateParams params) {
-        log.error("🔥 Stripe session creation failed after retries: {}", ex.getMessage());
-        return null; // You may choose to throw a custom exception
-    }
 }
 
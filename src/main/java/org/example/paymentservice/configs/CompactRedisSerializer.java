@@ -0,0 +1,114 @@
+package org.example.paymentservice.configs;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Redis value serializer: one format-version byte followed by headerless Jackson Smile
+ * (binary JSON with back-referenced property names). Type ids are embedded for
+ * non-final classes, unknown properties are ignored, and values written in another
+ * version or format (e.g. old JDK-serialized entries) read back as a cache miss.
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompactRedisSerializer.class);
+
+    static final byte FORMAT_VERSION = 1;
+
+    private final ObjectMapper mapper;
+
+    public CompactRedisSerializer() {
+        SmileFactory smile = SmileFactory.builder()
+                .disable(SmileGenerator.Feature.WRITE_HEADER)
+                .disable(SmileParser.Feature.REQUIRE_HEADER)
+                .build();
+        this.mapper = typedMapper(new ObjectMapper(smile));
+    }
+
+    /**
+     * Configures a mapper the way every cache serializer here expects: java.time support,
+     * lenient reads, and type ids restricted to our own classes and JDK value types.
+     */
+    public static ObjectMapper typedMapper(ObjectMapper mapper) {
+        BasicPolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("org.example.paymentservice.")
+                .allowIfSubType("java.util.")
+                .allowIfSubType("java.time.")
+                .allowIfSubType("java.math.")
+                .allowIfSubType("java.lang.")
+                .build();
+        return mapper.registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            byte[] body = mapper.writeValueAsBytes(normalize(value));
+            byte[] out = new byte[body.length + 1];
+            out[0] = FORMAT_VERSION;
+            System.arraycopy(body, 0, out, 1, body.length);
+            return out;
+        } catch (Exception ex) {
+            throw new SerializationException("Could not write " + value.getClass().getName(), ex);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != FORMAT_VERSION) {
+            logger.debug("Ignoring cached value with format byte {}", bytes[0]);
+            return null;
+        }
+        try {
+            return mapper.readValue(bytes, 1, bytes.length - 1, Object.class);
+        } catch (Exception ex) {
+            // A class changed incompatibly; drop the entry rather than fail the caller
+            logger.debug("Ignoring unreadable cached value: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Immutable JDK collections (List.of, Stream.toList) carry type ids that cannot be
+     * instantiated on read, so top-level collections are stored as their mutable equivalents.
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Set<?> set && !(value instanceof LinkedHashSet<?>)) {
+            return new LinkedHashSet<>(set);
+        }
+        if (value instanceof Collection<?> collection && !(value instanceof ArrayList<?>) && !(value instanceof Set<?>)) {
+            return new ArrayList<>(collection);
+        }
+        if (value instanceof Map<?, ?> map && !(value instanceof LinkedHashMap<?, ?>)) {
+            return new LinkedHashMap<>(map);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.paymentservice.configs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routing for payment requests that leave the gateway blank or set it to "any".
+ * {@code currencies.<gateway>} restricts a gateway to the listed ISO codes; gateways without
+ * an entry accept every currency.
+ */
+@Component
+@ConfigurationProperties(prefix = "payment.gateway.routing")
+public class GatewayRoutingProperties {
+
+    private String policy = "latency";
+    private double ewmaAlpha = 0.2;
+    private double errorPenalty = 4.0;
+    private int minSamples = 5;
+    private double exploreRatio = 0.05;
+    private Map<String, Integer> weights = new HashMap<>();
+    private Map<String, List<String>> currencies = new HashMap<>();
+
+    public boolean supports(String gateway, String currency) {
+        List<String> allowed = currencies.get(gateway);
+        return allowed == null || allowed.isEmpty()
+                || allowed.stream().anyMatch(code -> code.equalsIgnoreCase(currency));
+    }
+
+    public String getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(String policy) {
+        this.policy = policy;
+    }
+
+    public double getEwmaAlpha() {
+        return ewmaAlpha;
+    }
+
+    public void setEwmaAlpha(double ewmaAlpha) {
+        this.ewmaAlpha = ewmaAlpha;
+    }
+
+    public double getErrorPenalty() {
+        return errorPenalty;
+    }
+
+    public void setErrorPenalty(double errorPenalty) {
+        this.errorPenalty = errorPenalty;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public double getExploreRatio() {
+        return exploreRatio;
+    }
+
+    public void setExploreRatio(double exploreRatio) {
+        this.exploreRatio = exploreRatio;
+    }
+
+    public Map<String, Integer> getWeights() {
+        return weights;
+    }
+
+    public void setWeights(Map<String, Integer> weights) {
+        this.weights = weights;
+    }
+
+    public Map<String, List<String>> getCurrencies() {
+        return currencies;
+    }
+
+    public void setCurrencies(Map<String, List<String>> currencies) {
+        this.currencies = currencies;
+    }
+}
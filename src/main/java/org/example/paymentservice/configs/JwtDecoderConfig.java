@@ -0,0 +1,63 @@
+package org.example.paymentservice.configs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.web.client.RestClient;
+
+/**
+ * Local JWT validation with a cached JWK set. The JWKS document is kept in an in-memory
+ * cache and refreshed in the background, so request threads never block on a JWKS fetch.
+ * Only active when a JWK set URI is configured; otherwise Spring Boot's issuer based
+ * decoder is used as before.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.security.oauth2.resourceserver.jwt.jwk-set-uri")
+public class JwtDecoderConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtDecoderConfig.class);
+
+    @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}")
+    private String jwkSetUri;
+
+    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}")
+    private String issuerUri;
+
+    private final Cache jwksCache = new ConcurrentMapCache("jwks");
+    private final RestClient restClient = RestClient.create();
+
+    @Bean
+    public JwtDecoder jwtDecoder() {
+        NimbusJwtDecoder decoder = NimbusJwtDecoder.withJwkSetUri(jwkSetUri)
+                .cache(jwksCache)
+                .build();
+        if (!issuerUri.isBlank()) {
+            decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        }
+        return decoder;
+    }
+
+    // The decoder reads the raw JWKS document from the cache under the JWK set URI
+    @Scheduled(initialDelay = 0, fixedDelayString = "${security.jwt.jwks.refresh-interval-ms:300000}")
+    public void refreshJwks() {
+        try {
+            String jwks = restClient.get().uri(jwkSetUri).retrieve().body(String.class);
+            if (jwks != null) {
+                jwksCache.put(jwkSetUri, jwks);
+                logger.debug("🔑 JWKS refreshed from {}", jwkSetUri);
+            }
+        } catch (Exception ex) {
+            // Keep serving the cached keys; the decoder fetches on its own if a kid is unknown
+            logger.warn("JWKS refresh from {} failed: {}", jwkSetUri, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.paymentservice.configs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named token-bucket policies under {@code rate-limit.policies.<name>}. Webhook endpoints use
+ * {@code webhook-<provider>}; API endpoints name theirs with {@code @RateLimited}. Unknown names
+ * fall back to {@code rate-limit.default-policy}.
+ */
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    public enum Mode {
+        LOCAL,
+        REDIS
+    }
+
+    private Mode mode = Mode.LOCAL;
+    private int maxLocalBuckets = 10_000;
+    private Duration idleExpiry = Duration.ofMinutes(10);
+    private Policy defaultPolicy = new Policy();
+    private Map<String, Policy> policies = new HashMap<>();
+
+    public Policy policy(String name) {
+        return policies.getOrDefault(name, defaultPolicy);
+    }
+
+    public static class Policy {
+        private long capacity = 10;
+        private long refillTokens = 10;
+        private Duration refillPeriod = Duration.ofSeconds(10);
+
+        public long getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(long capacity) {
+            this.capacity = capacity;
+        }
+
+        public long getRefillTokens() {
+            return refillTokens;
+        }
+
+        public void setRefillTokens(long refillTokens) {
+            this.refillTokens = refillTokens;
+        }
+
+        public Duration getRefillPeriod() {
+            return refillPeriod;
+        }
+
+        public void setRefillPeriod(Duration refillPeriod) {
+            this.refillPeriod = refillPeriod;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public int getMaxLocalBuckets() {
+        return maxLocalBuckets;
+    }
+
+    public void setMaxLocalBuckets(int maxLocalBuckets) {
+        this.maxLocalBuckets = maxLocalBuckets;
+    }
+
+    public Duration getIdleExpiry() {
+        return idleExpiry;
+    }
+
+    public void setIdleExpiry(Duration idleExpiry) {
+        this.idleExpiry = idleExpiry;
+    }
+
+    public Policy getDefaultPolicy() {
+        return defaultPolicy;
+    }
+
+    public void setDefaultPolicy(Policy defaultPolicy) {
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    public Map<String, Policy> getPolicies() {
+        return policies;
+    }
+
+    public void setPolicies(Map<String, Policy> policies) {
+        this.policies = policies;
+    }
+}
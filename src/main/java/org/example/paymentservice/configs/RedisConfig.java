@@ -1,18 +1,23 @@
 package org.example.paymentservice.configs;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.interceptor.SimpleCacheResolver;
-import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
-import java.util.Collections;
 
 @Configuration
 @EnableCaching
@@ -28,18 +33,38 @@ public class RedisConfig {
         return new StringRedisTemplate(factory);
     }
 
+    /**
+     * Value serializer shared by {@link #redisTemplate} and {@link #cacheManager}:
+     * "smile" (compact binary, default), "json" or "jdk".
+     */
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory factory) {
+    public RedisSerializer<Object> cacheValueSerializer(@Value("${cache.serializer:smile}") String serializer) {
+        return switch (serializer.toLowerCase()) {
+            case "smile" -> new CompactRedisSerializer();
+            case "json" -> new GenericJackson2JsonRedisSerializer(CompactRedisSerializer.typedMapper(new ObjectMapper()));
+            case "jdk" -> new JdkSerializationRedisSerializer();
+            default -> throw new IllegalArgumentException("Unknown cache.serializer: " + serializer);
+        };
+    }
+
+    @Bean
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory factory,
+                                                       RedisSerializer<Object> cacheValueSerializer) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(factory);
+        template.setKeySerializer(StringRedisSerializer.UTF_8);
+        template.setHashKeySerializer(StringRedisSerializer.UTF_8);
+        template.setValueSerializer(cacheValueSerializer);
+        template.setHashValueSerializer(cacheValueSerializer);
         return template;
     }
 
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory factory) {
+    public CacheManager cacheManager(RedisConnectionFactory factory, RedisSerializer<Object> cacheValueSerializer) {
         return RedisCacheManager.builder(factory)
-                .cacheDefaults(org.springframework.data.redis.cache.RedisCacheConfiguration.defaultCacheConfig()
-                        .entryTtl(Duration.ofMinutes(30)))
+                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig()
+                        .entryTtl(Duration.ofMinutes(30))
+                        .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(cacheValueSerializer)))
                 .build();
     }
 }
@@ -0,0 +1,102 @@
+package org.example.paymentservice.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams JFR {@code jdk.VirtualThreadPinned} events while virtual threads are enabled. A
+ * pinned virtual thread blocks its carrier (typically blocking inside {@code synchronized} or
+ * a native frame), which under load starves every other virtual thread. Each event is timed
+ * under {@code jvm.virtual_threads.pinned} tagged with the first application frame, and the
+ * full stack is logged the first time a site shows up.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String APP_PACKAGE = "org.example.paymentservice.";
+
+    private final MeterRegistry meterRegistry;
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    @Value("${diagnostics.virtual-threads.pinning.enabled:true}")
+    private boolean enabled;
+
+    @Value("${diagnostics.virtual-threads.pinning.threshold-ms:20}")
+    private long thresholdMs;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.enable("jdk.VirtualThreadSubmitFailed");
+        stream.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+        stream.onEvent("jdk.VirtualThreadSubmitFailed",
+                event -> meterRegistry.counter("jvm.virtual_threads.submit_failed").increment());
+        stream.startAsync();
+        logger.info("🧵 Virtual thread pinning monitor started (threshold {} ms)", thresholdMs);
+    }
+
+    private void onPinned(RecordedEvent event) {
+        String site = site(event.getStackTrace());
+        Timer.builder("jvm.virtual_threads.pinned")
+                .tag("site", site)
+                .register(meterRegistry)
+                .record(event.getDuration());
+        if (reportedSites.add(site)) {
+            logger.warn("⚠️ Virtual thread pinned for {} ms at {}\n{}", event.getDuration().toMillis(), site,
+                    event.getStackTrace() == null ? "(no stack)" : event.getStackTrace().getFrames().stream()
+                            .limit(20)
+                            .map(frame -> "\tat " + describe(frame))
+                            .reduce((a, b) -> a + "\n" + b).orElse(""));
+        }
+    }
+
+    // First frame in our code, so the tag stays low-cardinality and points at something we own
+    private static String site(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.getMethod().getType().getName().startsWith(APP_PACKAGE)) {
+                return describe(frame);
+            }
+        }
+        return "library:" + stackTrace.getFrames().get(0).getMethod().getType().getName();
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.paymentservice.configs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factories for the service's own worker pools (webhook workers and retries, email
+ * sending). Follows {@code spring.threads.virtual.enabled}, the same switch Spring Boot uses
+ * for Tomcat, {@code @Scheduled} and its task executors, so one flag moves every blocking
+ * path onto virtual threads. Pool sizes still bound concurrency either way.
+ */
+@Component
+public class WorkerThreads {
+
+    private final boolean virtual;
+
+    public WorkerThreads(@Value("${spring.threads.virtual.enabled:false}") boolean virtual) {
+        this.virtual = virtual;
+    }
+
+    public ThreadFactory factory(String namePrefix) {
+        return virtual
+                ? Thread.ofVirtual().name(namePrefix, 0).factory()
+                : Thread.ofPlatform().name(namePrefix, 0).daemon(true).factory();
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.paymentservice.controllers;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.example.paymentservice.dtos.DeadLetterReplayRequestDto;
+import org.example.paymentservice.models.DeadLetterReplayJob;
+import org.example.paymentservice.security.AdminOnly;
+import org.example.paymentservice.services.DeadLetterReplayService;
+import org.example.paymentservice.services.TokenService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@SecurityRequirement(name = "bearerAuth")
+@Tag(name = "Dead-letter replay", description = "Re-publishes dead-lettered Kafka events")
+@PreAuthorize("isAuthenticated()")
+@RestController
+@RequestMapping("/api/admin/dead-letters/replays")
+public class DeadLetterReplayController {
+
+    private final DeadLetterReplayService replayService;
+    private final TokenService tokenService;
+
+    public DeadLetterReplayController(DeadLetterReplayService replayService, TokenService tokenService) {
+        this.replayService = replayService;
+        this.tokenService = tokenService;
+    }
+
+    @Operation(summary = "Start a throttled replay of dead letters matching topic / key / time range")
+    @PostMapping
+    @AdminOnly
+    public ResponseEntity<DeadLetterReplayJob> create(@Valid @RequestBody DeadLetterReplayRequestDto request,
+                                                      @RequestHeader("Authorization") String authHeader) {
+        String requestedBy = tokenService.introspect(authHeader).getSub();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(replayService.create(request, requestedBy));
+    }
+
+    @Operation(summary = "Replay job status and progress")
+    @GetMapping("/{id}")
+    @AdminOnly
+    public ResponseEntity<DeadLetterReplayJob> get(@PathVariable Long id) {
+        return replayService.find(id).map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Pause a running replay after its current chunk")
+    @PostMapping("/{id}/pause")
+    @AdminOnly
+    public ResponseEntity<DeadLetterReplayJob> pause(@PathVariable Long id) {
+        return respond(id, replayService.pause(id));
+    }
+
+    @Operation(summary = "Resume a paused or failed replay from its checkpoint")
+    @PostMapping("/{id}/resume")
+    @AdminOnly
+    public ResponseEntity<DeadLetterReplayJob> resume(@PathVariable Long id) {
+        return respond(id, replayService.resume(id));
+    }
+
+    private ResponseEntity<DeadLetterReplayJob> respond(Long id, boolean changed) {
+        return replayService.find(id)
+                .map(job -> ResponseEntity.status(changed ? HttpStatus.OK : HttpStatus.CONFLICT).body(job))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -9,6 +9,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.example.paymentservice.dtos.PaymentPageDto;
 import org.example.paymentservice.dtos.PaymentRequestDto;
 import org.example.paymentservice.dtos.PaymentResponseDto;
 import org.example.paymentservice.dtos.TokenIntrospectionResponseDTO;
@@ -16,21 +17,29 @@ import org.example.paymentservice.models.Payment;
 import org.example.paymentservice.models.PaymentStatus;
 import org.example.paymentservice.repositories.PaymentRepository;
 import org.example.paymentservice.security.HasScope;
+import org.example.paymentservice.security.RateLimited;
+import org.example.paymentservice.services.PaymentCacheService;
 import org.example.paymentservice.services.PaymentProcessingService;
+import org.example.paymentservice.services.PaymentStateMachine;
+import org.example.paymentservice.services.PaymentStatusChangedEvent;
 import org.example.paymentservice.services.PaymentStatusService;
 import org.example.paymentservice.services.TokenService;
 import org.example.paymentservice.utils.TokenClaimUtils;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Optional;
 
 @SecurityRequirement(name = "bearerAuth")
@@ -44,6 +53,9 @@ public class PaymentController {
     @Autowired private PaymentRepository paymentRepository;
     @Autowired private TokenService tokenService;
     @Autowired private PaymentStatusService paymentService;
+    @Autowired private PaymentCacheService paymentCacheService;
+    @Autowired private PaymentStateMachine paymentStateMachine;
+    @Autowired private ApplicationEventPublisher eventPublisher;
 
     @Operation(
             summary = "Create payment link",
@@ -98,17 +110,20 @@ public class PaymentController {
                         """
                                     )
                             )
-                    )
+                    ),
+                    @ApiResponse(responseCode = "409", description = "Same order / Idempotency-Key still in flight, or key reused with a different body")
             }
     )
     @PostMapping("/link")
     @HasScope("payment:create")
+    @RateLimited("payment-create")
     public ResponseEntity<PaymentResponseDto> createPaymentLink(
             @Valid @RequestBody PaymentRequestDto paymentRequest,
-            @RequestHeader("Authorization") String authHeader) {
+            @RequestHeader("Authorization") String authHeader,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         MDC.put("orderId", paymentRequest.getOrderId());
         MDC.put("paymentProvider", paymentRequest.getGateway());
-        PaymentResponseDto response = paymentProcessingService.createPaymentLink(paymentRequest, authHeader);
+        PaymentResponseDto response = paymentProcessingService.createPaymentLink(paymentRequest, authHeader, idempotencyKey);
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
@@ -154,6 +169,7 @@ public class PaymentController {
     )
     @GetMapping("/{paymentId}")
     @HasScope("payment:read")
+    @RateLimited("payment-read")
     public ResponseEntity<?> getPaymentById(@PathVariable Long paymentId) {
         Optional<Payment> payment = paymentRepository.findById(paymentId);
         return payment.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
@@ -173,9 +189,11 @@ public class PaymentController {
     )
     @GetMapping("/status/order/{orderId}")
     @HasScope("payment:read")
+    @RateLimited("payment-read")
     public ResponseEntity<?> getPaymentStatusByOrderId(@PathVariable String orderId) {
-        Payment payment = paymentRepository.findByOrderId(orderId);
-        return payment != null ? ResponseEntity.ok(payment.getStatus()) : ResponseEntity.notFound().build();
+        return paymentCacheService.getPaymentStatus(orderId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @Operation(
@@ -194,25 +212,49 @@ public class PaymentController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access denied");
         }
         // TODO: Optional logic to mark payment as ROLLED_BACK, if applicable
-        Payment payment = paymentRepository.findByOrderId(orderId);
-        if (payment != null && !payment.getStatus().equals(PaymentStatus.SUCCEEDED)) {
-            payment.setStatus(PaymentStatus.FAILED);
-            payment.setUpdatedAt(LocalDateTime.now());
-            paymentRepository.save(payment);
+        // Succeeded (or concurrently succeeding) payments are left alone
+        if (paymentStateMachine.transition(orderId, PaymentStatus.FAILED, null) == PaymentStateMachine.Result.APPLIED) {
+            Payment payment = paymentRepository.findByOrderId(orderId);
+            eventPublisher.publishEvent(PaymentStatusChangedEvent.of(orderId, payment.getUserId(), PaymentStatus.FAILED));
         }
         return ResponseEntity.ok("Payment rollback acknowledged for order: " + orderId);
     }
 
 
-    @Operation(summary = "Get authenticated user's payment history")
+    @Operation(
+            summary = "Get authenticated user's payment history",
+            description = "Newest first, keyset-paginated. Pass the returned nextCursor to fetch the next page."
+    )
     @GetMapping("/me/payments")
     @HasScope("payment:read")
-    public ResponseEntity<List<PaymentResponseDto>> getMyPayments(@RequestHeader("Authorization") String tokenHeader) {
+    @RateLimited("payment-history")
+    public ResponseEntity<PaymentPageDto> getMyPayments(
+            @RequestHeader("Authorization") String tokenHeader,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) PaymentStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "${payment.history.default-page-size:20}") int size) {
         TokenIntrospectionResponseDTO token = tokenService.introspect(tokenHeader);
-        List<PaymentResponseDto> payments = paymentService.getPaymentsByUserId(token.getSub());
-        return ResponseEntity.ok(payments);
+        PaymentPageDto page = paymentService.getPaymentsByUserId(token.getSub(), status, from, to, cursor, size);
+        return ResponseEntity.ok(page);
     }
 
-
+    @Operation(summary = "Export authenticated user's payment history as a streamed JSON array")
+    @GetMapping(value = "/me/payments/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    @HasScope("payment:read")
+    @RateLimited("payment-export")
+    public ResponseEntity<StreamingResponseBody> exportMyPayments(
+            @RequestHeader("Authorization") String tokenHeader,
+            @RequestParam(required = false) PaymentStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        String userId = tokenService.introspect(tokenHeader).getSub();
+        StreamingResponseBody body = out -> paymentService.exportPaymentsByUserId(userId, status, from, to, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"payments.json\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
 
 }
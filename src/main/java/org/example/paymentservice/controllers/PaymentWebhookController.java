@@ -3,18 +3,14 @@ package org.example.paymentservice.controllers;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.Event;
 import com.stripe.net.Webhook;
-import io.github.bucket4j.Bucket;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.example.paymentservice.models.WebhookEvent;
-import org.example.paymentservice.models.WebhookRetryTask;
-import org.example.paymentservice.repositories.*;
+import org.example.paymentservice.security.RazorpaySignatureVerifier;
 import org.example.paymentservice.services.*;
-import org.example.paymentservice.utils.RazorpayWebhookUtils;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,8 +19,6 @@ import org.springframework.http.*;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.Duration;
-import java.time.LocalDateTime;
 
 @SecurityRequirement(name = "bearerAuth")
 @Tag(name = "Webhook API", description = "Handles incoming Stripe and Razorpay webhooks")
@@ -38,14 +32,14 @@ public class PaymentWebhookController {
     @Value("${stripe.webhook.secret}")
     private String stripeWebhookSecret;
 
-    @Value("${razorpay.webhook.secret}")
-    private String razorpayWebhookSecret;
+    @Value("${feature.webhook.async.enabled:false}")
+    private boolean asyncIngestionEnabled;
 
-    @Autowired private WebhookEventRepository webhookEventRepository;
-    @Autowired private WebhookRetryTaskRepository webhookRetryTaskRepository;
-    @Autowired private PaymentStatusService paymentStatusService;
+    @Autowired private WebhookProcessingService webhookProcessingService;
+    @Autowired private WebhookIngestionService webhookIngestionService;
     @Autowired private RateLimiterService rateLimiterService;
-    @Autowired private RedisWebhookLockService webhookLockService;
+    @Autowired private WebhookIdempotencyGate idempotencyGate;
+    @Autowired private RazorpaySignatureVerifier razorpaySignatureVerifier;
 
 
     @Operation(
@@ -59,24 +53,16 @@ public class PaymentWebhookController {
                     )
             ),
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Processed successfully"),
+                    @ApiResponse(responseCode = "200", description = "Processed successfully (or accepted for async processing)"),
                     @ApiResponse(responseCode = "400", description = "Invalid signature or missing data"),
                     @ApiResponse(responseCode = "409", description = "Duplicate event"),
-                    @ApiResponse(responseCode = "429", description = "Rate limit exceeded"),
+                    @ApiResponse(responseCode = "202", description = "Rate limit exceeded, queued for later processing"),
                     @ApiResponse(responseCode = "500", description = "Internal error")
             }
     )
     @PostMapping("/stripe")
     public ResponseEntity<String> stripeWebhook(@RequestBody String payload,
                                                 @RequestHeader("Stripe-Signature") String sigHeader) {
-
-
-        Bucket bucket = rateLimiterService.resolveBucket("stripe-webhook");
-        if (!bucket.tryConsume(1)) {
-            logger.warn("Stripe webhook rate limit exceeded");
-            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body("Rate limit exceeded");
-        }
-
         Event event;
         try {
             event = Webhook.constructEvent(payload, sigHeader, stripeWebhookSecret);
@@ -90,27 +76,17 @@ public class PaymentWebhookController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Missing event id");
         }
 
-        String redisKey = "webhook:stripe:" + eventId;
-        if (!webhookLockService.tryLock(redisKey, Duration.ofHours(6))) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).body("Duplicate webhook event (locked)");
+        boolean shed = !rateLimiterService.tryConsume("webhook-stripe", "stripe").allowed();
+        if (shed || asyncIngestionEnabled) {
+            return enqueue("stripe", eventId, WebhookProcessingService.stripeOrderId(event), payload, sigHeader, shed);
         }
 
-        if (webhookEventRepository.findByEventId(eventId).isPresent()) {
-            logger.warn("Duplicate Stripe webhook event received. Skipping. eventId={}", eventId);
-            return ResponseEntity.status(HttpStatus.CONFLICT).body("Duplicate Stripe event");
-        }
-
-        try {
-            if ("checkout.session.completed".equals(event.getType())) {
-                paymentStatusService.handleStripeCheckoutSessionCompleted(event);
-            }
-            webhookEventRepository.save(new WebhookEvent(eventId, LocalDateTime.now()));
-            return ResponseEntity.ok("Stripe webhook processed successfully");
-        } catch (Exception ex) {
-            logger.error("Stripe webhook processing failed: {}", ex.getMessage());
-            webhookRetryTaskRepository.save(WebhookRetryTask.buildStripeRetry(payload, sigHeader));
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Stripe webhook enqueued for retry");
-        }
+        return switch (webhookProcessingService.processStripe(event, payload, sigHeader)) {
+            case PROCESSED -> ResponseEntity.ok("Stripe webhook processed successfully");
+            case DUPLICATE -> ResponseEntity.status(HttpStatus.CONFLICT).body("Duplicate Stripe event");
+            case IN_FLIGHT -> ResponseEntity.status(HttpStatus.CONFLICT).body("Stripe event is already being processed");
+            case RETRY_QUEUED -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Stripe webhook enqueued for retry");
+        };
     }
 
     @Operation(
@@ -124,24 +100,18 @@ public class PaymentWebhookController {
                     )
             ),
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Webhook processed"),
+                    @ApiResponse(responseCode = "200", description = "Webhook processed (or accepted for async processing)"),
                     @ApiResponse(responseCode = "400", description = "Invalid signature or missing data"),
                     @ApiResponse(responseCode = "409", description = "Duplicate event"),
-                    @ApiResponse(responseCode = "429", description = "Rate limit exceeded"),
+                    @ApiResponse(responseCode = "202", description = "Rate limit exceeded, queued for later processing"),
                     @ApiResponse(responseCode = "500", description = "Processing failed, task queued")
             }
     )
     @PostMapping("/razorpay")
     public ResponseEntity<String> razorpayWebhook(@RequestBody String payload,
                                                   @RequestHeader("X-Razorpay-Signature") String sigHeader) {
-        Bucket bucket = rateLimiterService.resolveBucket("razorpay-webhook");
-        if (!bucket.tryConsume(1)) {
-            logger.warn("Razorpay webhook rate limit exceeded");
-            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body("Rate limit exceeded");
-        }
-
         logger.info("Received Razorpay webhook payload: {}", payload);
-        boolean isValid = RazorpayWebhookUtils.verifyWebhookSignature(payload, sigHeader, razorpayWebhookSecret);
+        boolean isValid = razorpaySignatureVerifier.verify(payload, sigHeader);
         if (!isValid) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid Razorpay webhook signature");
         }
@@ -152,25 +122,37 @@ public class PaymentWebhookController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Missing event id");
         }
 
-        String redisKey = "webhook:razorpay:" + eventId;
-        if (!webhookLockService.tryLock(redisKey, Duration.ofHours(6))) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).body("Duplicate webhook event (locked)");
+        boolean shed = !rateLimiterService.tryConsume("webhook-razorpay", "razorpay").allowed();
+        if (shed || asyncIngestionEnabled) {
+            return enqueue("razorpay", eventId, WebhookProcessingService.razorpayOrderId(jsonPayload), payload, sigHeader, shed);
         }
 
-        if (webhookEventRepository.findByEventId(eventId).isPresent()) {
-            logger.warn("Duplicate Razorpay webhook event received. Skipping. eventId={}", eventId);
-            return ResponseEntity.status(HttpStatus.CONFLICT).body("Duplicate Razorpay event");
-        }
+        return switch (webhookProcessingService.processRazorpay(jsonPayload, payload, sigHeader)) {
+            case PROCESSED -> ResponseEntity.ok("Razorpay webhook processed successfully");
+            case DUPLICATE -> ResponseEntity.status(HttpStatus.CONFLICT).body("Duplicate Razorpay event");
+            case IN_FLIGHT -> ResponseEntity.status(HttpStatus.CONFLICT).body("Razorpay event is already being processed");
+            case RETRY_QUEUED -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Razorpay webhook enqueued for retry");
+        };
+    }
 
-        try {
-            paymentStatusService.handleRazorpayEvent(jsonPayload);
-            webhookEventRepository.save(new WebhookEvent(eventId, LocalDateTime.now()));
-            return ResponseEntity.ok("Razorpay webhook processed successfully");
-        } catch (Exception ex) {
-            logger.error("Razorpay webhook processing failed: {}", ex.getMessage());
-            webhookRetryTaskRepository.save(WebhookRetryTask.buildRazorpayRetry(payload, sigHeader));
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Razorpay webhook enqueued for retry");
+    /**
+     * Hands a verified webhook to the inbox. Over the provider's rate limit the webhook is
+     * only stored (202) and the sweeper processes it later, so providers are never refused.
+     */
+    private ResponseEntity<String> enqueue(String provider, String eventId, String orderId,
+                                           String payload, String sigHeader, boolean shed) {
+        if (!idempotencyGate.receive(provider, eventId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Duplicate " + provider + " event");
+        }
+        if (shed) {
+            logger.warn("⚠️ {} webhook rate limit exceeded, deferring eventId={}", provider, eventId);
+            return webhookIngestionService.defer(provider, eventId, orderId, payload, sigHeader)
+                    ? ResponseEntity.status(HttpStatus.ACCEPTED).body(provider + " webhook queued")
+                    : ResponseEntity.status(HttpStatus.CONFLICT).body("Duplicate " + provider + " event");
         }
+        return webhookIngestionService.ingest(provider, eventId, orderId, payload, sigHeader)
+                ? ResponseEntity.ok(provider + " webhook accepted")
+                : ResponseEntity.status(HttpStatus.CONFLICT).body("Duplicate " + provider + " event");
     }
 
 }
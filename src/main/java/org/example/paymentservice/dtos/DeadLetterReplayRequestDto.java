@@ -0,0 +1,79 @@
+package org.example.paymentservice.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+import java.time.LocalDateTime;
+
+public class DeadLetterReplayRequestDto {
+
+    @Schema(description = "Only dead letters destined for this topic; all topics if omitted", example = "payment.success")
+    private String topic;
+
+    @Schema(description = "Only dead letters with this message key (orderId)", example = "order_abc123")
+    private String key;
+
+    @Schema(description = "Dead-lettered at or after this time", example = "2025-01-01T00:00:00")
+    private LocalDateTime from;
+
+    @Schema(description = "Dead-lettered before this time", example = "2025-01-02T00:00:00")
+    private LocalDateTime to;
+
+    @Schema(description = "Max events re-published per second; service default if omitted", example = "50")
+    @Min(value = 1, message = "Rate must be at least 1 per second")
+    private Integer ratePerSecond;
+
+    @Schema(description = "Max unacknowledged sends; service default if omitted", example = "4")
+    @Min(value = 1, message = "Parallelism must be at least 1")
+    @Max(value = 64, message = "Parallelism must be at most 64")
+    private Integer parallelism;
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    public Integer getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public void setRatePerSecond(Integer ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public Integer getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(Integer parallelism) {
+        this.parallelism = parallelism;
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.paymentservice.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+@Schema(description = "One page of a user's payment history, newest first")
+public class PaymentPageDto implements Serializable {
+
+    @Schema(description = "Payments on this page")
+    private List<PaymentResponseDto> items = new ArrayList<>();
+
+    @Schema(description = "Opaque cursor for the next page; absent on the last page", example = "MjAyNS0wNS0xNlQxMjozMDowMHw0Mg")
+    private String nextCursor;
+
+    @Schema(description = "Requested page size", example = "20")
+    private int size;
+
+    public PaymentPageDto() {}
+
+    public PaymentPageDto(List<PaymentResponseDto> items, String nextCursor, int size) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.size = size;
+    }
+
+    public List<PaymentResponseDto> getItems() {
+        return items;
+    }
+
+    public void setItems(List<PaymentResponseDto> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+}
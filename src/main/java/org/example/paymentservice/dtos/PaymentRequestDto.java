@@ -26,8 +26,7 @@ public class PaymentRequestDto {
     @NotBlank(message = "Order ID is required")
     private String orderId;
 
-    @Schema(description = "Payment provider name", example = "stripe")
-    @NotBlank(message = "Payment gateway is required")
+    @Schema(description = "Payment provider name; blank or \"any\" lets the service pick one", example = "stripe")
     private String gateway;
 
     public @NotNull(message = "Amount is required") @Min(value = 1, message = "Amount should be at least 1") Long getAmount() {
@@ -62,11 +61,11 @@ public class PaymentRequestDto {
         this.orderId = orderId;
     }
 
-    public @NotBlank(message = "Payment gateway is required") String getGateway() {
+    public String getGateway() {
         return gateway;
     }
 
-    public void setGateway(@NotBlank(message = "Payment gateway is required") String gateway) {
+    public void setGateway(String gateway) {
         this.gateway = gateway;
     }
 }
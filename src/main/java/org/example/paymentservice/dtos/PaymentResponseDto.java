@@ -2,11 +2,12 @@ package org.example.paymentservice.dtos;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Schema(description = "Payment response returned to clients")
-public class PaymentResponseDto {
+public class PaymentResponseDto implements Serializable {
 
     @Schema(description = "Order ID", example = "order_abc123")
     private String orderId;
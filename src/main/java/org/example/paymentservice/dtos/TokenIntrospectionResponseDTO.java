@@ -1,8 +1,9 @@
 package org.example.paymentservice.dtos;
 
+import java.io.Serializable;
 import java.util.List;
 
-public class TokenIntrospectionResponseDTO {
+public class TokenIntrospectionResponseDTO implements Serializable {
     private boolean active;
     private String sub;
     private String email;
@@ -0,0 +1,12 @@
+package org.example.paymentservice.exceptions;
+
+/**
+ * A request clashes with an earlier one sharing its idempotency key: still in flight, or
+ * the key was reused with a different payload.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
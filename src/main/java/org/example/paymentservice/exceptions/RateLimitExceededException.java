@@ -0,0 +1,17 @@
+package org.example.paymentservice.exceptions;
+
+import java.time.Duration;
+
+public class RateLimitExceededException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public RateLimitExceededException(String policy, Duration retryAfter) {
+        super("Rate limit exceeded for " + policy);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
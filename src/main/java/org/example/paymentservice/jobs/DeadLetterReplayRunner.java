@@ -0,0 +1,277 @@
+package org.example.paymentservice.jobs;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.example.paymentservice.configs.WorkerThreads;
+import org.example.paymentservice.kafka.PaymentEventOutbox;
+import org.example.paymentservice.kafka.PaymentEventPublisher;
+import org.example.paymentservice.models.DeadLetterReplayJob;
+import org.example.paymentservice.models.ReplayJobStatus;
+import org.example.paymentservice.models.RetryDeadLetterLog;
+import org.example.paymentservice.repositories.DeadLetterReplayJobRepository;
+import org.example.paymentservice.repositories.RetryDeadLetterLogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Re-publishes dead letters for RUNNING replay jobs. A replica leases one job at a time and
+ * walks its dead letters in id order, chunk by chunk: each send waits for a token from a
+ * bucket refilled at the job's rate and for one of {@code parallelism} in-flight permits.
+ * The lease is renewed while sending, and a pause stops sending at the next renewal. Once
+ * every started send has completed, acknowledged rows get {@code replayed_at} and the job's
+ * checkpoint moves past them, so a pause, crash or lost lease resumes from there (at most one
+ * chunk is re-sent; consumers already dedupe by orderId).
+ */
+@Component
+public class DeadLetterReplayRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterReplayRunner.class);
+
+    private final DeadLetterReplayJobRepository jobRepository;
+    private final RetryDeadLetterLogRepository deadLetterRepository;
+    private final PaymentEventPublisher publisher;
+    private final PaymentEventOutbox paymentEventOutbox;
+    private final ExecutorService executor;
+    private final AtomicBoolean busy = new AtomicBoolean();
+    private final Counter replayedCounter;
+    private final Counter failedCounter;
+    private final Counter chunkCounter;
+
+    @Value("${dead-letter.replay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dead-letter.replay.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${dead-letter.replay.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${dead-letter.replay.send-timeout-ms:30000}")
+    private long sendTimeoutMs;
+
+    public DeadLetterReplayRunner(DeadLetterReplayJobRepository jobRepository,
+                                  RetryDeadLetterLogRepository deadLetterRepository,
+                                  PaymentEventPublisher publisher,
+                                  PaymentEventOutbox paymentEventOutbox,
+                                  WorkerThreads workerThreads,
+                                  MeterRegistry meterRegistry) {
+        this.jobRepository = jobRepository;
+        this.deadLetterRepository = deadLetterRepository;
+        this.publisher = publisher;
+        this.paymentEventOutbox = paymentEventOutbox;
+        // Long-running jobs get their own thread instead of holding a scheduler thread
+        this.executor = Executors.newSingleThreadExecutor(workerThreads.factory("dead-letter-replay-"));
+        this.replayedCounter = meterRegistry.counter("dead_letter.replay.replayed");
+        this.failedCounter = meterRegistry.counter("dead_letter.replay.failed");
+        this.chunkCounter = meterRegistry.counter("dead_letter.replay.chunks");
+    }
+
+    @Scheduled(fixedDelayString = "${dead-letter.replay.poll-interval-ms:5000}")
+    public void pollJobs() {
+        if (!enabled || !busy.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::runClaimableJobs);
+        } catch (RuntimeException ex) {
+            busy.set(false);
+            throw ex;
+        }
+    }
+
+    // Package-private for tests; normally runs on the replay thread via pollJobs()
+    void runClaimableJobs() {
+        try {
+            for (Long jobId : jobRepository.findClaimable(ReplayJobStatus.RUNNING, LocalDateTime.now())) {
+                LocalDateTime now = LocalDateTime.now();
+                LocalDateTime until = leaseFrom(now);
+                if (jobRepository.lease(jobId, null, until, now) == 1) {
+                    run(jobId, new JobLease(jobId, until));
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("🚨 Dead-letter replay poll failed: {}", ex.getMessage(), ex);
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    private void run(Long jobId, JobLease lease) {
+        DeadLetterReplayJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        logger.info("♻️ Replaying dead letters for job {} from id {}", jobId, job.getLastProcessedId());
+        Bucket bucket = Bucket.builder()
+                .addLimit(Bandwidth.classic(job.getRatePerSecond(),
+                        Refill.greedy(job.getRatePerSecond(), Duration.ofSeconds(1))))
+                .build();
+        Semaphore permits = new Semaphore(job.getParallelism());
+        try {
+            while (true) {
+                List<RetryDeadLetterLog> chunk = deadLetterRepository.findReplayChunk(job.getLastProcessedId(),
+                        job.getTopic(), job.getMessageKey(), job.getFromTime(), job.getToTime(), Limit.of(chunkSize));
+                if (chunk.isEmpty()) {
+                    jobRepository.transition(jobId, ReplayJobStatus.RUNNING, ReplayJobStatus.COMPLETED, LocalDateTime.now());
+                    logger.info("✅ Dead-letter replay job {} completed", jobId);
+                    return;
+                }
+                boolean leaseHeld = replayChunk(job, chunk, bucket, permits, lease);
+                chunkCounter.increment();
+
+                // Also picks up a pause issued while the chunk was in flight
+                if (!leaseHeld || !lease.renew()) {
+                    logger.info("⏸️ Dead-letter replay job {} stopped at id {} (paused or lease lost)",
+                            jobId, job.getLastProcessedId());
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            logger.error("🚨 Dead-letter replay job {} failed: {}", jobId, ex.getMessage(), ex);
+            jobRepository.checkpoint(jobId, job.getLastProcessedId(), 0, 0, truncate(ex.getMessage()), LocalDateTime.now());
+            jobRepository.transition(jobId, ReplayJobStatus.RUNNING, ReplayJobStatus.FAILED, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Replays a chunk and checkpoints the rows it got to. The lease is renewed every third of
+     * its length while sending, so a slow job is never taken over mid-chunk; if renewal fails
+     * (paused, or the lease was lost) sending stops early and false is returned.
+     */
+    private boolean replayChunk(DeadLetterReplayJob job, List<RetryDeadLetterLog> chunk, Bucket bucket,
+                                Semaphore permits, JobLease lease) throws InterruptedException {
+        Queue<Long> replayed = new ConcurrentLinkedQueue<>();
+        AtomicReference<String> lastError = new AtomicReference<>();
+        List<CompletableFuture<?>> sends = new ArrayList<>(chunk.size());
+        int failed = 0;
+        int attempted = 0;
+        boolean leaseHeld = true;
+
+        for (RetryDeadLetterLog deadLetter : chunk) {
+            if (lease.renewalDue() && !lease.renew()) {
+                leaseHeld = false;
+                break;
+            }
+            attempted++;
+            Object event;
+            try {
+                event = paymentEventOutbox.deserialize(deadLetter.getPayloadType(), deadLetter.getPayload());
+            } catch (Exception ex) {
+                // Untyped or unreadable rows are skipped; they stay unreplayed for inspection
+                failed++;
+                lastError.set("Dead letter " + deadLetter.getId() + ": " + ex.getMessage());
+                continue;
+            }
+            bucket.asBlocking().consume(1);
+            permits.acquire();
+            CompletableFuture<?> send;
+            try {
+                send = publisher.republish(deadLetter.getKey(), event);
+            } catch (RuntimeException ex) {
+                permits.release();
+                throw ex;
+            }
+            sends.add(send.whenComplete((result, ex) -> {
+                permits.release();
+                if (ex == null) {
+                    replayed.add(deadLetter.getId());
+                } else {
+                    lastError.set("Dead letter " + deadLetter.getId() + ": " + ex.getMessage());
+                }
+            }));
+        }
+        if (attempted == 0) {
+            return leaseHeld;
+        }
+
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (Exception ex) {
+            // Individual failures are already recorded; a timeout leaves the rest counted as failed
+            lastError.compareAndSet(null, ex.toString());
+        }
+
+        List<Long> replayedIds = new ArrayList<>(replayed);
+        failed += sends.size() - replayedIds.size();
+        LocalDateTime now = LocalDateTime.now();
+        if (!replayedIds.isEmpty()) {
+            deadLetterRepository.markReplayed(replayedIds, now);
+        }
+        long lastId = chunk.get(attempted - 1).getId();
+        jobRepository.checkpoint(job.getId(), lastId, replayedIds.size(), failed, truncate(lastError.get()), now);
+        job.setLastProcessedId(lastId);
+        replayedCounter.increment(replayedIds.size());
+        failedCounter.increment(failed);
+        if (failed > 0) {
+            logger.warn("⚠️ Dead-letter replay job {}: {} of {} sends failed in chunk ending at id {} ({})",
+                    job.getId(), failed, attempted, lastId, lastError.get());
+        }
+        return leaseHeld;
+    }
+
+    private final class JobLease {
+        private final Long jobId;
+        private LocalDateTime until;
+        private long renewedAtNanos = System.nanoTime();
+
+        private JobLease(Long jobId, LocalDateTime until) {
+            this.jobId = jobId;
+            this.until = until;
+        }
+
+        boolean renewalDue() {
+            return System.nanoTime() - renewedAtNanos >= TimeUnit.MILLISECONDS.toNanos(leaseMs) / 3;
+        }
+
+        // False once the job is no longer RUNNING or another replica holds the lease
+        boolean renew() {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime next = leaseFrom(now);
+            if (jobRepository.lease(jobId, until, next, now) == 0) {
+                return false;
+            }
+            until = next;
+            renewedAtNanos = System.nanoTime();
+            return true;
+        }
+    }
+
+    // Millisecond precision so the value read back from DATETIME(6) compares equal on renewal
+    private LocalDateTime leaseFrom(LocalDateTime now) {
+        return now.plus(Duration.ofMillis(leaseMs)).truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private static String truncate(String message) {
+        return message == null || message.length() <= 1024 ? message : message.substring(0, 1024);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
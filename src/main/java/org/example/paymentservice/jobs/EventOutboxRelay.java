@@ -0,0 +1,165 @@
+package org.example.paymentservice.jobs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.paymentservice.kafka.PaymentEventOutbox;
+import org.example.paymentservice.kafka.PaymentEventPublisher;
+import org.example.paymentservice.models.EventOutbox;
+import org.example.paymentservice.repositories.EventOutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams {@code event_outbox} rows to Kafka. Each run claims a batch with
+ * {@code FOR UPDATE SKIP LOCKED} plus a lease, sends every row asynchronously keyed by
+ * orderId, waits for the acknowledgements and marks the acknowledged rows published in
+ * one update. Only the oldest row per key is sent in a batch; later rows for that key are
+ * released unsent and go out in a following batch once it is acknowledged, so a failed
+ * event is never overtaken by a later one for the same order.
+ */
+@Component
+public class EventOutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventOutboxRelay.class);
+
+    private final EventOutboxRepository outboxRepository;
+    private final PaymentEventOutbox paymentEventOutbox;
+    private final PaymentEventPublisher publisher;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final Counter publishedCounter;
+    private final Counter failedCounter;
+    private final DistributionSummary batchSize;
+
+    @Value("${outbox.relay.batch-size:200}")
+    private int batchLimit;
+
+    @Value("${outbox.relay.max-batches-per-run:10}")
+    private int maxBatchesPerRun;
+
+    @Value("${outbox.relay.lease-ms:30000}")
+    private long leaseMs;
+
+    @Value("${outbox.relay.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    @Value("${outbox.relay.retention-hours:72}")
+    private long retentionHours;
+
+    public EventOutboxRelay(EventOutboxRepository outboxRepository,
+                            PaymentEventOutbox paymentEventOutbox,
+                            PaymentEventPublisher publisher,
+                            TransactionTemplate transactionTemplate,
+                            MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.paymentEventOutbox = paymentEventOutbox;
+        this.publisher = publisher;
+        this.transactionTemplate = transactionTemplate;
+
+        Gauge.builder("outbox.relay.lag", lagMillis, AtomicLong::get)
+                .description("Age in ms of the oldest unpublished outbox event")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        this.publishedCounter = meterRegistry.counter("outbox.relay.published");
+        this.failedCounter = meterRegistry.counter("outbox.relay.failed");
+        this.batchSize = DistributionSummary.builder("outbox.relay.batch.size").register(meterRegistry);
+    }
+
+    // The poll interval doubles as the relay's linger: events wait at most this long before a batch goes out
+    @Scheduled(fixedDelayString = "${outbox.relay.linger-ms:200}")
+    public void relay() {
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            if (relayBatch() < batchLimit) {
+                break;
+            }
+        }
+        updateLag();
+    }
+
+    private int relayBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = transactionTemplate.execute(status -> {
+            List<Long> locked = outboxRepository.lockNextBatch(now, batchLimit);
+            if (!locked.isEmpty()) {
+                outboxRepository.lease(locked, now.plus(Duration.ofMillis(leaseMs)));
+            }
+            return locked;
+        });
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+
+        List<EventOutbox> rows = new ArrayList<>(outboxRepository.findAllById(ids));
+        rows.sort(Comparator.comparing(EventOutbox::getId));
+        batchSize.record(rows.size());
+
+        Map<Long, CompletableFuture<?>> sends = new LinkedHashMap<>();
+        Set<String> sentKeys = new HashSet<>();
+        List<Long> deferred = new ArrayList<>();
+        List<Long> failed = new ArrayList<>();
+        for (EventOutbox row : rows) {
+            if (row.getMessageKey() != null && !sentKeys.add(row.getMessageKey())) {
+                deferred.add(row.getId());
+                continue;
+            }
+            try {
+                sends.put(row.getId(), publisher.send(row.getTopic(), row.getMessageKey(),
+                        paymentEventOutbox.deserialize(row)));
+            } catch (Exception ex) {
+                logger.error("Outbox event {} could not be sent: {}", row.getId(), ex.getMessage());
+                failed.add(row.getId());
+            }
+        }
+
+        List<Long> published = new ArrayList<>(sends.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (Map.Entry<Long, CompletableFuture<?>> send : sends.entrySet()) {
+            try {
+                send.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                published.add(send.getKey());
+            } catch (Exception ex) {
+                logger.warn("⚠️ Kafka did not acknowledge outbox event {}: {}", send.getKey(), ex.getMessage());
+                failed.add(send.getKey());
+            }
+        }
+
+        if (!published.isEmpty()) {
+            outboxRepository.markPublished(published, LocalDateTime.now());
+            publishedCounter.increment(published.size());
+        }
+        if (!failed.isEmpty()) {
+            outboxRepository.releaseFailed(failed, "Kafka send failed or timed out");
+            failedCounter.increment(failed.size());
+        }
+        if (!deferred.isEmpty()) {
+            outboxRepository.release(deferred);
+        }
+        return rows.size();
+    }
+
+    private void updateLag() {
+        LocalDateTime oldest = outboxRepository.findOldestUnpublishedCreatedAt();
+        lagMillis.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toMillis()));
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.cleanup-interval-ms:3600000}")
+    public void purgePublished() {
+        int deleted = outboxRepository.deletePublishedBefore(LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            logger.info("🧹 Purged {} published outbox events", deleted);
+        }
+    }
+}
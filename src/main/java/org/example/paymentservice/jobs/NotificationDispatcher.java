@@ -0,0 +1,168 @@
+package org.example.paymentservice.jobs;
+
+import io.micrometer.core.instrument.*;
+import jakarta.annotation.PreDestroy;
+import org.example.paymentservice.configs.WorkerThreads;
+import org.example.paymentservice.models.NotificationOutbox;
+import org.example.paymentservice.models.NotificationStatus;
+import org.example.paymentservice.repositories.NotificationOutboxRepository;
+import org.example.paymentservice.services.SendGridEmailService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains {@code notification_outbox} in batches. Each batch is claimed row by row
+ * (PENDING -> SENDING) so several replicas can run the dispatcher, then sent in parallel
+ * over the shared SendGrid connection pool. Failures are retried with exponential backoff
+ * until {@code notification.dispatch.max-attempts} is reached.
+ */
+@Component
+public class NotificationDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final SendGridEmailService emailService;
+    private final ExecutorService sendPool;
+    private final Timer sendTimer;
+    private final Counter sentCounter;
+    private final Counter retryCounter;
+    private final Counter failedCounter;
+    private final DistributionSummary batchSize;
+    // Refreshed by each dispatch run so scrapes don't hit the database
+    private final AtomicLong pending = new AtomicLong();
+
+    @Value("${notification.dispatch.batch-size:50}")
+    private int batchLimit;
+
+    @Value("${notification.dispatch.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${notification.dispatch.backoff-base-ms:5000}")
+    private long backoffBaseMs;
+
+    @Value("${notification.dispatch.backoff-max-ms:3600000}")
+    private long backoffMaxMs;
+
+    @Value("${notification.dispatch.sending-lease-ms:300000}")
+    private long sendingLeaseMs;
+
+    public NotificationDispatcher(NotificationOutboxRepository outboxRepository,
+                                  SendGridEmailService emailService,
+                                  MeterRegistry meterRegistry,
+                                  WorkerThreads workerThreads,
+                                  @Value("${notification.dispatch.concurrency:4}") int concurrency) {
+        this.outboxRepository = outboxRepository;
+        this.emailService = emailService;
+        this.sendPool = Executors.newFixedThreadPool(concurrency,
+                workerThreads.factory("email-sender-"));
+
+        this.sendTimer = Timer.builder("notification.email.send.latency")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.sentCounter = meterRegistry.counter("notification.email.sent");
+        this.retryCounter = meterRegistry.counter("notification.email.retried");
+        this.failedCounter = meterRegistry.counter("notification.email.failed");
+        this.batchSize = DistributionSummary.builder("notification.dispatch.batch.size").register(meterRegistry);
+        Gauge.builder("notification.outbox.pending", pending, AtomicLong::get).register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${notification.dispatch.interval-ms:2000}")
+    public void dispatchPending() {
+        dispatchBatch();
+        updatePending();
+    }
+
+    private void dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        releaseExpiredClaims(now);
+
+        List<NotificationOutbox> candidates = outboxRepository.findByStatusAndNextAttemptAtBeforeOrderByIdAsc(
+                NotificationStatus.PENDING, now, Limit.of(batchLimit));
+        List<NotificationOutbox> claimed = new ArrayList<>(candidates.size());
+        for (NotificationOutbox notification : candidates) {
+            if (outboxRepository.transition(notification.getId(), NotificationStatus.PENDING,
+                    NotificationStatus.SENDING, now) == 1) {
+                claimed.add(notification);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+        batchSize.record(claimed.size());
+
+        CompletableFuture<?>[] sends = claimed.stream()
+                .map(notification -> CompletableFuture.runAsync(() -> send(notification), sendPool))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(sends).join();
+        outboxRepository.saveAll(claimed);
+        logger.info("📨 Notification batch done: {} emails", claimed.size());
+    }
+
+    private void updatePending() {
+        pending.set(outboxRepository.countByStatus(NotificationStatus.PENDING));
+    }
+
+    private void send(NotificationOutbox notification) {
+        LocalDateTime now = LocalDateTime.now();
+        notification.setAttemptCount(notification.getAttemptCount() + 1);
+        notification.setUpdatedAt(now);
+        try {
+            sendTimer.recordCallable(() -> {
+                emailService.sendEmail(notification.getRecipient(), notification.getSubject(), notification.getBody());
+                return null;
+            });
+            notification.setStatus(NotificationStatus.SENT);
+            notification.setSentAt(now);
+            notification.setLastError(null);
+            sentCounter.increment();
+        } catch (Exception ex) {
+            notification.setLastError(truncate(ex.getMessage()));
+            if (notification.getAttemptCount() >= maxAttempts) {
+                notification.setStatus(NotificationStatus.FAILED);
+                failedCounter.increment();
+                logger.error("❌ Giving up on email {} after {} attempts", notification.getDedupKey(), notification.getAttemptCount());
+            } else {
+                notification.setStatus(NotificationStatus.PENDING);
+                notification.setNextAttemptAt(now.plus(backoff(notification.getAttemptCount())));
+                retryCounter.increment();
+            }
+        }
+    }
+
+    private Duration backoff(int attempt) {
+        long delay = backoffBaseMs << Math.min(attempt - 1, 20);
+        return Duration.ofMillis(Math.min(delay, backoffMaxMs));
+    }
+
+    private void releaseExpiredClaims(LocalDateTime now) {
+        // Rows left in SENDING by a crashed dispatcher are made eligible again
+        for (NotificationOutbox stuck : outboxRepository.findByStatusAndUpdatedAtBefore(
+                NotificationStatus.SENDING, now.minus(Duration.ofMillis(sendingLeaseMs)))) {
+            outboxRepository.transition(stuck.getId(), NotificationStatus.SENDING, NotificationStatus.PENDING, now);
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendPool.shutdown();
+    }
+}
@@ -1,67 +1,136 @@
 package org.example.paymentservice.jobs;
 
-import jakarta.transaction.Transactional;
-import org.example.paymentservice.models.Payment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.paymentservice.models.PaymentAuditLog;
 import org.example.paymentservice.models.PaymentStatus;
-import org.example.paymentservice.repositories.PaymentRepository;
+import org.example.paymentservice.repositories.PaymentBulkRepository;
+import org.example.paymentservice.repositories.PaymentBulkRepository.PaymentRow;
 import org.example.paymentservice.services.AuditLoggerService;
+import org.example.paymentservice.services.PaymentStateMachine;
+import org.example.paymentservice.services.PaymentStatusChangedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * Fails INITIATED payments older than the cutoff in chunks. Each chunk is its own short
+ * transaction: lock the next rows with SKIP LOCKED (so replicas split the work instead of
+ * colliding), flip them with one bulk UPDATE and write their audit rows in one JDBC batch.
+ */
 @Component
 public class PaymentExpiryScheduler {
     @Value("${feature.payment.expiry.enabled:true}")
     private boolean isExpiryEnabled;
 
+    @Value("${payment.expiry.cutoff-minutes:15}")
+    private long cutoffMinutes;
+
+    @Value("${payment.expiry.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${payment.expiry.max-chunks-per-run:1000}")
+    private int maxChunksPerRun;
+
     private static final Logger logger = LoggerFactory.getLogger(PaymentExpiryScheduler.class);
-    private final PaymentRepository paymentRepository;
+    private final PaymentBulkRepository paymentBulkRepository;
     private final AuditLoggerService auditLoggerService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PaymentStateMachine paymentStateMachine;
+    private final Timer runTimer;
+    private final Counter expiredCounter;
+    private final Counter chunkCounter;
 
-    public PaymentExpiryScheduler(PaymentRepository paymentRepository,
-                                  AuditLoggerService auditLoggerService) {
-        this.paymentRepository = paymentRepository;
+    public PaymentExpiryScheduler(PaymentBulkRepository paymentBulkRepository,
+                                  AuditLoggerService auditLoggerService,
+                                  TransactionTemplate transactionTemplate,
+                                  ApplicationEventPublisher eventPublisher,
+                                  PaymentStateMachine paymentStateMachine,
+                                  MeterRegistry meterRegistry) {
+        this.paymentBulkRepository = paymentBulkRepository;
         this.auditLoggerService = auditLoggerService;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.paymentStateMachine = paymentStateMachine;
+        this.runTimer = meterRegistry.timer("payment.expiry.run.duration");
+        this.expiredCounter = meterRegistry.counter("payment.expiry.rows.expired");
+        this.chunkCounter = meterRegistry.counter("payment.expiry.chunks");
     }
 
-    @Scheduled(fixedRate = 600000) // every 10 minutes
-    @Transactional
+    @Scheduled(fixedRateString = "${payment.expiry.interval-ms:600000}") // every 10 minutes
     public void expireStalePayments() {
         if (!isExpiryEnabled) {
             logger.info("Payment expiry feature disabled via config.");
             return;
         }
-        LocalDateTime expiryCutoff = LocalDateTime.now().minusMinutes(15);
-        List<Payment> stalePayments = paymentRepository.findByStatusAndCreatedAtBefore(PaymentStatus.INITIATED, expiryCutoff);
+        runTimer.record(this::expireInChunks);
+    }
+
+    private void expireInChunks() {
+        LocalDateTime expiryCutoff = LocalDateTime.now().minusMinutes(cutoffMinutes);
+        String details = "Auto-expired after " + cutoffMinutes + " mins";
+
+        PaymentRow cursor = null;
+        long expired = 0;
+        int chunks = 0;
+        while (chunks < maxChunksPerRun) {
+            PaymentRow previous = cursor;
+            ChunkResult result = transactionTemplate.execute(status -> expireChunk(expiryCutoff, previous, details));
+            if (result == null || result.locked() == 0) {
+                break;
+            }
+            chunks++;
+            expired += result.updated();
+            chunkCounter.increment();
+            expiredCounter.increment(result.updated());
+            cursor = result.last();
+            if (result.locked() < chunkSize) {
+                break;
+            }
+        }
 
-        if (stalePayments.isEmpty()) {
+        if (expired == 0) {
             logger.info("No stale INITIATED payments found for expiry.");
-            return;
+        } else {
+            logger.info("Expired {} INITIATED payments in {} chunks (cutoff {})", expired, chunks, expiryCutoff);
         }
+    }
 
-        for (Payment payment : stalePayments) {
-            payment.setStatus(PaymentStatus.FAILED);
-            payment.setUpdatedAt(LocalDateTime.now());
-            paymentRepository.save(payment);
+    private ChunkResult expireChunk(LocalDateTime cutoff, PaymentRow after, String details) {
+        List<PaymentRow> rows = paymentBulkRepository.lockChunk(PaymentStatus.INITIATED, cutoff, after, chunkSize);
+        if (rows.isEmpty()) {
+            return new ChunkResult(0, 0, null);
+        }
 
-            auditLoggerService.log(
-                    payment.getOrderId(),
-                    payment.getUserId(),
-                    payment.getPaymentProvider(),
-                    payment.getAmount(),
-                    payment.getCurrency(),
-                    payment.getExternalPaymentId(),
-                    PaymentStatus.FAILED.name(),
-                    "Auto-expired after 15 mins"
-            );
+        LocalDateTime now = LocalDateTime.now();
+        int updated = paymentBulkRepository.updateStatus(
+                rows.stream().map(PaymentRow::id).toList(), PaymentStatus.INITIATED, PaymentStatus.FAILED, now);
+        paymentStateMachine.recordBulk(PaymentStatus.INITIATED, PaymentStatus.FAILED, updated, rows.size() - updated);
 
+        List<PaymentAuditLog> audits = rows.stream().map(row -> {
+            PaymentAuditLog log = new PaymentAuditLog(row.orderId(), row.userId(), row.provider(), row.amount(),
+                    PaymentStatus.FAILED.name(), now, details);
+            log.setCurrency(row.currency());
+            log.setExternalPaymentId(row.externalPaymentId());
+            return log;
+        }).toList();
+        auditLoggerService.logBatch(audits);
+        // Applied to the caches once this chunk commits
+        eventPublisher.publishEvent(new PaymentStatusChangedEvent(rows.stream()
+                .map(row -> new PaymentStatusChangedEvent.Change(row.orderId(), row.userId(), PaymentStatus.FAILED))
+                .toList()));
 
-            logger.info("Expired INITIATED payment: id={}, orderId={}", payment.getId(), payment.getOrderId());
-        }
+        return new ChunkResult(rows.size(), updated, rows.get(rows.size() - 1));
     }
+
+    private record ChunkResult(int locked, int updated, PaymentRow last) {}
 }
@@ -1,54 +1,147 @@
 package org.example.paymentservice.jobs;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.example.paymentservice.kafka.PaymentEvent;
 import org.example.paymentservice.kafka.PaymentEventPublisher;
-import org.example.paymentservice.kafka.PaymentFailedEvent;
 import org.example.paymentservice.models.RetryDeadLetterLog;
-import org.example.paymentservice.repositories.RetryDeadLetterLogRepository;
+import org.example.paymentservice.repositories.RetryDeadLetterBulkRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.log.LogAccessor;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Drains the retry topic in batches. Every record in a poll is re-published at once; the
+ * ones that are not acknowledged within {@code kafka.retry-consumer.send-timeout-ms}, or that
+ * could not be deserialized, go to {@code retry_dead_letter_logs} in one JDBC batch. Offsets
+ * are committed only after that, so a crash replays the batch instead of losing it.
+ */
 @Component
 public class PaymentRetryConsumer {
 
     private static final Logger logger = LoggerFactory.getLogger(PaymentRetryConsumer.class);
+    private static final LogAccessor LOG_ACCESSOR = new LogAccessor(PaymentRetryConsumer.class);
+
     private final PaymentEventPublisher publisher;
-    @Autowired private RetryDeadLetterLogRepository deadLetterRepo;
+    private final RetryDeadLetterBulkRepository deadLetterRepository;
+    private final ObjectMapper objectMapper;
+    private final DistributionSummary batchSize;
+    private final Timer recordLag;
+    private final Counter republishedCounter;
+    private final Counter deadLetteredCounter;
+
+    @Value("${kafka.retry-consumer.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
 
-    public PaymentRetryConsumer(PaymentEventPublisher publisher) {
+    public PaymentRetryConsumer(PaymentEventPublisher publisher,
+                                RetryDeadLetterBulkRepository deadLetterRepository,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry) {
         this.publisher = publisher;
+        this.deadLetterRepository = deadLetterRepository;
+        this.objectMapper = objectMapper;
+        this.batchSize = DistributionSummary.builder("payment.retry.consumer.batch.size").register(meterRegistry);
+        this.recordLag = Timer.builder("payment.retry.consumer.lag")
+                .description("Age of retry records when they are consumed")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.republishedCounter = meterRegistry.counter("payment.retry.consumer.republished");
+        this.deadLetteredCounter = meterRegistry.counter("payment.retry.consumer.dead_lettered");
     }
 
-    @KafkaListener(topics = "${topic.payment.retry}", groupId = "payment-retry-consumer")
-    public void retryFailedEvent(ConsumerRecord<String, Object> record) {
-        String orderId = record.key();
-        Object value = record.value();
+    @KafkaListener(topics = "${topic.payment.retry}", groupId = "payment-retry-consumer",
+            containerFactory = "retryBatchListenerContainerFactory")
+    public void retryFailedEvents(List<ConsumerRecord<String, Object>> records, Acknowledgment ack) {
+        batchSize.record(records.size());
+        long now = System.currentTimeMillis();
+        logger.info("🔁 Consuming {} retry events", records.size());
 
-        logger.info("🔁 Consuming retry event for orderId={}, value={}", orderId, value);
+        List<CompletableFuture<?>> sends = new ArrayList<>(records.size());
+        List<RetryDeadLetterLog> deadLetters = new ArrayList<>();
+        for (ConsumerRecord<String, Object> record : records) {
+            recordLag.record(Math.max(0, now - record.timestamp()), TimeUnit.MILLISECONDS);
+            if (record.value() == null) {
+                sends.add(null);
+                deadLetters.add(undeserializable(record));
+                continue;
+            }
+            sends.add(publisher.republish(record.key(), record.value()));
+        }
 
-        try {
-            if (value instanceof PaymentEvent event) {
-                publisher.publishPaymentSuccess(event);
-            } else if (value instanceof PaymentFailedEvent failedEvent) {
-                publisher.publishPaymentFailedEvent(failedEvent);
-            } else {
-                logger.warn("⚠️ Unknown object type in retry topic: {}", value.getClass().getName());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (int i = 0; i < records.size(); i++) {
+            CompletableFuture<?> send = sends.get(i);
+            if (send == null) {
+                continue;
+            }
+            ConsumerRecord<String, Object> record = records.get(i);
+            try {
+                send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                republishedCounter.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while re-publishing retry batch", e);
+            } catch (Exception ex) {
+                String error = ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage();
+                logger.error("🔥 Retry from retry topic failed again for orderId={}: {}", record.key(), error);
+                RetryDeadLetterLog log = deadLetter(record, payload(record.value()), error);
+                log.setPayloadType(record.value().getClass().getSimpleName());
+                // Stored under the destination topic so replays can be filtered by it
+                String destination = publisher.topicFor(record.value());
+                if (destination != null) {
+                    log.setTopic(destination);
+                }
+                deadLetters.add(log);
             }
-        } catch (Exception ex) {
-            logger.error("🔥 Retry from retry topic failed again for orderId={}: {}", orderId, ex.getMessage());
-            RetryDeadLetterLog log = new RetryDeadLetterLog();
-            log.setTopic(record.topic());
-            log.setKey(orderId);
-            log.setPayload(value.toString());
-            log.setErrorMessage(ex.getMessage());
-            log.setCreatedAt(LocalDateTime.now());
-            deadLetterRepo.save(log);
+        }
+
+        // Throws if the database is down: the batch is redelivered, nothing is committed
+        deadLetterRepository.insertAll(deadLetters);
+        deadLetteredCounter.increment(deadLetters.size());
+        ack.acknowledge();
+    }
+
+    private RetryDeadLetterLog undeserializable(ConsumerRecord<String, Object> record) {
+        DeserializationException ex = SerializationUtils.getExceptionFromHeader(record,
+                SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOG_ACCESSOR);
+        String payload = ex != null && ex.getData() != null ? new String(ex.getData(), StandardCharsets.UTF_8) : null;
+        String error = ex != null ? ex.getMessage() : "Null value on retry topic";
+        logger.warn("⚠️ Undeserializable record on {} at offset {}: {}", record.topic(), record.offset(), error);
+        return deadLetter(record, payload, error);
+    }
+
+    private RetryDeadLetterLog deadLetter(ConsumerRecord<String, Object> record, String payload, String error) {
+        RetryDeadLetterLog log = new RetryDeadLetterLog();
+        log.setTopic(record.topic());
+        log.setKey(record.key());
+        log.setPayload(payload);
+        log.setErrorMessage(error == null ? null : error.substring(0, Math.min(error.length(), 1024)));
+        log.setCreatedAt(LocalDateTime.now());
+        return log;
+    }
+
+    private String payload(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return String.valueOf(value);
         }
     }
 }
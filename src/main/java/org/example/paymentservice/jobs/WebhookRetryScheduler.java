@@ -1,23 +1,42 @@
 package org.example.paymentservice.jobs;
 
 
-import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.Event;
-import com.stripe.net.Webhook;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.example.paymentservice.configs.WorkerThreads;
+import org.example.paymentservice.models.WebhookEvent;
 import org.example.paymentservice.models.WebhookRetryTask;
+import org.example.paymentservice.repositories.WebhookEventRepository;
 import org.example.paymentservice.repositories.WebhookRetryTaskRepository;
+import org.example.paymentservice.security.RazorpaySignatureVerifier;
 import org.example.paymentservice.services.PaymentStatusService;
-import org.example.paymentservice.utils.RazorpayWebhookUtils;
+import org.example.paymentservice.services.WebhookIdempotencyGate;
+import org.example.paymentservice.services.WebhookProcessingService;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Replays failed webhooks. Due tasks are claimed with {@code FOR UPDATE SKIP LOCKED} and
+ * leased, so replicas never pick up the same task, then processed on a bounded pool.
+ * Failures back off exponentially with jitter; after {@code webhook.retry.max-attempts}
+ * the task is dead-lettered and left for manual inspection.
+ */
 @Component
 public class WebhookRetryScheduler {
 
@@ -25,55 +44,183 @@ public class WebhookRetryScheduler {
 
     private final WebhookRetryTaskRepository retryRepo;
     private final PaymentStatusService paymentStatusService;
-
-    @Value("${stripe.webhook.secret}")
-    private String stripeSecret;
-
-    @Value("${razorpay.webhook.secret}")
-    private String razorpaySecret;
+    private final RazorpaySignatureVerifier razorpaySignatureVerifier;
+    private final WebhookIdempotencyGate idempotencyGate;
+    private final WebhookEventRepository webhookEventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService retryPool;
+    private final Counter succeededCounter;
+    private final Counter rescheduledCounter;
+    private final Counter deadLetterCounter;
+    private final DistributionSummary batchSize;
 
     @Value("${feature.retry.enabled:true}")
     private boolean isRetryEnabled;
 
+    @Value("${webhook.retry.batch-size:50}")
+    private int batchLimit;
+
+    @Value("${webhook.retry.max-batches-per-run:10}")
+    private int maxBatchesPerRun;
+
+    @Value("${webhook.retry.lease-ms:300000}")
+    private long leaseMs;
+
+    @Value("${webhook.retry.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${webhook.retry.backoff-base-ms:10000}")
+    private long backoffBaseMs;
+
+    @Value("${webhook.retry.backoff-max-ms:3600000}")
+    private long backoffMaxMs;
+
     public WebhookRetryScheduler(WebhookRetryTaskRepository retryRepo,
-                                 PaymentStatusService paymentStatusService) {
+                                 PaymentStatusService paymentStatusService,
+                                 RazorpaySignatureVerifier razorpaySignatureVerifier,
+                                 WebhookIdempotencyGate idempotencyGate,
+                                 WebhookEventRepository webhookEventRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry,
+                                 WorkerThreads workerThreads,
+                                 @Value("${webhook.retry.concurrency:4}") int concurrency) {
         this.retryRepo = retryRepo;
         this.paymentStatusService = paymentStatusService;
+        this.razorpaySignatureVerifier = razorpaySignatureVerifier;
+        this.idempotencyGate = idempotencyGate;
+        this.webhookEventRepository = webhookEventRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.retryPool = Executors.newFixedThreadPool(concurrency,
+                workerThreads.factory("webhook-retry-"));
+
+        this.succeededCounter = meterRegistry.counter("webhook.retry.succeeded");
+        this.rescheduledCounter = meterRegistry.counter("webhook.retry.rescheduled");
+        this.deadLetterCounter = meterRegistry.counter("webhook.retry.dead_lettered");
+        this.batchSize = DistributionSummary.builder("webhook.retry.batch.size").register(meterRegistry);
     }
 
-    @Scheduled(fixedDelay = 30000) // Runs every 30 seconds
+    @Scheduled(fixedDelayString = "${webhook.retry.poll-interval-ms:5000}")
     public void retryWebhookTasks() {
         if (!isRetryEnabled) {
-            logger.info("Retry feature disabled via config.");
+            logger.debug("Retry feature disabled via config.");
             return;
         }
-        List<WebhookRetryTask> tasks = retryRepo.findTop10ByProcessedFalseOrderByCreatedAtAsc();
-        for (WebhookRetryTask task : tasks) {
-            try {
-                if ("stripe".equalsIgnoreCase(task.getProvider())) {
-                    Event event = Webhook.constructEvent(
-                            task.getPayload(), task.getSignature(), stripeSecret
-                    );
-                    paymentStatusService.handleStripeCheckoutSessionCompleted(event);
-                } else if ("razorpay".equalsIgnoreCase(task.getProvider())) {
-                    boolean valid = RazorpayWebhookUtils.verifyWebhookSignature(
-                            task.getPayload(), task.getSignature(), razorpaySecret
-                    );
-                    if (!valid) throw new IllegalArgumentException("Invalid Razorpay signature");
-                    JSONObject payloadJson = new JSONObject(task.getPayload());
-                    paymentStatusService.handleRazorpayEvent(payloadJson);
-                }
-
-                task.setProcessed(true);
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            List<WebhookRetryTask> tasks = claimBatch();
+            if (tasks.isEmpty()) {
+                return;
+            }
+            batchSize.record(tasks.size());
+
+            CompletableFuture<?>[] attempts = tasks.stream()
+                    .map(task -> CompletableFuture.runAsync(() -> attempt(task), retryPool))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(attempts).join();
+            retryRepo.saveAll(tasks);
+
+            if (tasks.size() < batchLimit) {
+                return;
+            }
+        }
+    }
+
+    private List<WebhookRetryTask> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = retryRepo.lockDueTasks(now, batchLimit);
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            retryRepo.lease(ids, now.plus(Duration.ofMillis(leaseMs)));
+            return retryRepo.findAllById(ids);
+        });
+    }
+
+    private void attempt(WebhookRetryTask task) {
+        LocalDateTime now = LocalDateTime.now();
+        task.setAttemptCount(task.getAttemptCount() + 1);
+        task.setUpdatedAt(now);
+        task.setLeaseUntil(null);
+        try {
+            boolean applied;
+            if ("stripe".equalsIgnoreCase(task.getProvider())) {
+                // Signature was checked when the webhook arrived; re-verifying would hit Stripe's timestamp tolerance
+                Event event = WebhookProcessingService.parseStripeEvent(task.getPayload());
+                applied = replay("stripe", event.getId(), WebhookProcessingService.stripeOrderId(event),
+                        () -> paymentStatusService.handleStripeCheckoutSessionCompleted(event));
+            } else if ("razorpay".equalsIgnoreCase(task.getProvider())) {
+                boolean valid = razorpaySignatureVerifier.verify(task.getPayload(), task.getSignature());
+                if (!valid) throw new IllegalArgumentException("Invalid Razorpay signature");
+                JSONObject payloadJson = new JSONObject(task.getPayload());
+                applied = replay("razorpay", payloadJson.optString("id"), WebhookProcessingService.razorpayOrderId(payloadJson),
+                        () -> paymentStatusService.handleRazorpayEvent(payloadJson));
+            } else {
+                throw new IllegalArgumentException("Unknown provider: " + task.getProvider());
+            }
+
+            task.setProcessed(true);
+            task.setLastError(null);
+            succeededCounter.increment();
+            if (applied) {
                 logger.info("✅ Successfully retried webhook task ID {}", task.getId());
-            } catch (Exception ex) {
-                logger.warn("⚠️ Retry failed for task ID {}: {}", task.getId(), ex.getMessage());
+            } else {
+                logger.info("Webhook task ID {} was already processed by a redelivery", task.getId());
             }
+        } catch (Exception ex) {
+            task.setLastError(truncate(ex.getMessage()));
+            if (task.getAttemptCount() >= maxAttempts) {
+                task.setDeadLettered(true);
+                deadLetterCounter.increment();
+                logger.error("☠️ Webhook task ID {} dead-lettered after {} attempts: {}",
+                        task.getId(), task.getAttemptCount(), ex.getMessage());
+            } else {
+                task.setNextAttemptAt(now.plus(backoff(task.getAttemptCount())));
+                rescheduledCounter.increment();
+                logger.warn("⚠️ Retry failed for task ID {} (attempt {}): {}",
+                        task.getId(), task.getAttemptCount(), ex.getMessage());
+            }
+        }
+    }
 
-            task.setAttemptCount(task.getAttemptCount() + 1);
-            task.setUpdatedAt(LocalDateTime.now());
-            retryRepo.save(task);
+    /**
+     * Runs the handler under the webhook idempotency gate, so a provider redelivery and the
+     * retry job never apply the same event twice.
+     *
+     * @return false if the event had already been processed
+     */
+    private boolean replay(String provider, String eventId, String orderId, Runnable handler) {
+        switch (idempotencyGate.enter(provider, eventId)) {
+            case DUPLICATE -> {
+                return false;
+            }
+            case IN_FLIGHT -> throw new IllegalStateException("Event " + eventId + " is being processed elsewhere");
+            case ACQUIRED -> { }
         }
+        try {
+            handler.run();
+            webhookEventRepository.save(new WebhookEvent(eventId, LocalDateTime.now()));
+        } catch (RuntimeException ex) {
+            idempotencyGate.fail(provider, eventId);
+            paymentStatusService.recordProcessingFailure(provider, orderId, ex);
+            throw ex;
+        }
+        idempotencyGate.complete(provider, eventId);
+        return true;
+    }
+
+    // Full jitter over the upper half of the exponential window, so replicas don't retry in lockstep
+    private Duration backoff(int attempt) {
+        long delay = Math.min(backoffBaseMs << Math.min(attempt - 1, 20), backoffMaxMs);
+        return Duration.ofMillis(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
     }
-}
 
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryPool.shutdown();
+    }
+}
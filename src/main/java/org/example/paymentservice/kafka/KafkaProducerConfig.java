@@ -2,6 +2,7 @@ package org.example.paymentservice.kafka;
 
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
@@ -15,28 +16,23 @@ import java.util.Map;
 @EnableKafka
 public class KafkaProducerConfig {
 
+    /**
+     * Producer settings come from {@code spring.kafka.*} (bootstrap servers, acks, retries...)
+     * with {@code kafka.publisher.defaults} batching on top.
+     */
     @Bean
-    public ProducerFactory<String, PaymentEvent> paymentProducerFactory() {
-        Map<String, Object> configProps = new HashMap<>();
-        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+    public ProducerFactory<String, Object> paymentProducerFactory(KafkaProperties kafkaProperties,
+                                                                  KafkaPublisherProperties publisherProperties) {
+        Map<String, Object> configProps = new HashMap<>(kafkaProperties.buildProducerProperties(null));
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        configProps.putAll(publisherProperties.getDefaults().toProducerOverrides());
         return new DefaultKafkaProducerFactory<>(configProps);
     }
 
-//    @Bean
-//    public KafkaTemplate<String, PaymentEvent> paymentKafkaTemplate() {
-//        return new KafkaTemplate<>(paymentProducerFactory());
-//    }
-
     @Bean
-    public KafkaTemplate<String, Object> paymentKafkaTemplate() {
-        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(Map.of(
-                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092",
-                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
-                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class
-        )));
+    public KafkaTemplate<String, Object> paymentKafkaTemplate(ProducerFactory<String, Object> paymentProducerFactory) {
+        return new KafkaTemplate<>(paymentProducerFactory);
     }
 
 }
-
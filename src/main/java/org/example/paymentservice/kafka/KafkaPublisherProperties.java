@@ -0,0 +1,114 @@
+package org.example.paymentservice.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Publisher limits and producer batching. {@code defaults} applies to every topic;
+ * {@code topics[<name>]} entries get their own producer with those settings layered on top,
+ * e.g. {@code kafka.publisher.topics[payment.success].linger-ms=20}.
+ */
+@Component
+@ConfigurationProperties(prefix = "kafka.publisher")
+public class KafkaPublisherProperties {
+
+    private int maxInFlight = 1000;
+    private Duration backpressureTimeout = Duration.ofSeconds(5);
+    private TopicSettings defaults = new TopicSettings();
+    private Map<String, TopicSettings> topics = new HashMap<>();
+
+    public static class TopicSettings {
+        private Integer lingerMs;
+        private Integer batchSize;
+        private String compressionType;
+        private Boolean idempotence;
+        private String acks;
+
+        public Map<String, Object> toProducerOverrides() {
+            Map<String, Object> overrides = new HashMap<>();
+            if (lingerMs != null) overrides.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+            if (batchSize != null) overrides.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+            if (compressionType != null) overrides.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+            if (idempotence != null) overrides.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, idempotence);
+            if (acks != null) overrides.put(ProducerConfig.ACKS_CONFIG, acks);
+            return overrides;
+        }
+
+        public Integer getLingerMs() {
+            return lingerMs;
+        }
+
+        public void setLingerMs(Integer lingerMs) {
+            this.lingerMs = lingerMs;
+        }
+
+        public Integer getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(Integer batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public String getCompressionType() {
+            return compressionType;
+        }
+
+        public void setCompressionType(String compressionType) {
+            this.compressionType = compressionType;
+        }
+
+        public Boolean getIdempotence() {
+            return idempotence;
+        }
+
+        public void setIdempotence(Boolean idempotence) {
+            this.idempotence = idempotence;
+        }
+
+        public String getAcks() {
+            return acks;
+        }
+
+        public void setAcks(String acks) {
+            this.acks = acks;
+        }
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Duration getBackpressureTimeout() {
+        return backpressureTimeout;
+    }
+
+    public void setBackpressureTimeout(Duration backpressureTimeout) {
+        this.backpressureTimeout = backpressureTimeout;
+    }
+
+    public TopicSettings getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(TopicSettings defaults) {
+        this.defaults = defaults;
+    }
+
+    public Map<String, TopicSettings> getTopics() {
+        return topics;
+    }
+
+    public void setTopics(Map<String, TopicSettings> topics) {
+        this.topics = topics;
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.paymentservice.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.paymentservice.models.EventOutbox;
+import org.example.paymentservice.repositories.EventOutboxRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Writes payment events to {@code event_outbox}. Joins the caller's transaction so the
+ * event is stored atomically with the payment update; the relay publishes it to Kafka.
+ */
+@Service
+public class PaymentEventOutbox {
+
+    private static final Map<String, Class<?>> EVENT_TYPES = Map.of(
+            PaymentEvent.class.getSimpleName(), PaymentEvent.class,
+            PaymentFailedEvent.class.getSimpleName(), PaymentFailedEvent.class
+    );
+
+    private final EventOutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${topic.payment.success}")
+    private String successTopic;
+
+    @Value("${topic.payment.failed}")
+    private String failedTopic;
+
+    public PaymentEventOutbox(EventOutboxRepository outboxRepository, ObjectMapper objectMapper) {
+        this.outboxRepository = outboxRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional
+    public void recordPaymentSuccess(PaymentEvent event) {
+        record(successTopic, event.getOrderId(), event);
+    }
+
+    @Transactional
+    public void recordPaymentFailed(PaymentFailedEvent event) {
+        record(failedTopic, event.getOrderId(), event);
+    }
+
+    public Object deserialize(EventOutbox row) throws JsonProcessingException {
+        return deserialize(row.getEventType(), row.getPayload());
+    }
+
+    /**
+     * Reads an event stored as JSON with its simple class name, as in the outbox and the
+     * retry dead letters.
+     */
+    public Object deserialize(String eventType, String payload) throws JsonProcessingException {
+        Class<?> type = eventType == null ? null : EVENT_TYPES.get(eventType);
+        if (type == null) {
+            throw new IllegalStateException("Unknown event type: " + eventType);
+        }
+        return objectMapper.readValue(payload, type);
+    }
+
+    private void record(String topic, String key, Object event) {
+        EventOutbox row = new EventOutbox();
+        row.setTopic(topic);
+        row.setMessageKey(key);
+        row.setEventType(event.getClass().getSimpleName());
+        try {
+            row.setPayload(objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not serialize " + row.getEventType(), ex);
+        }
+        row.setCreatedAt(LocalDateTime.now());
+        outboxRepository.save(row);
+    }
+}
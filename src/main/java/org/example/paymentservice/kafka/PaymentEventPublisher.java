@@ -1,18 +1,47 @@
 package org.example.paymentservice.kafka;
 
-import org.apache.kafka.clients.producer.ProducerRecord;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.example.paymentservice.configs.WorkerThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous Kafka publishing with a cap on unacknowledged sends. Callers block for up to
+ * {@code kafka.publisher.backpressure-timeout} once {@code max-in-flight} sends are pending
+ * (and inside the producer when its buffer is full, up to {@code max.block.ms}), so a slow
+ * broker pushes back instead of queueing without bound. Failures are seen in the send
+ * callback; {@code payment.success} / {@code payment.failed} events that the broker rejects
+ * are re-routed to the retry topic from there.
+ */
 @Service
 public class PaymentEventPublisher {
 
     private static final Logger logger = LoggerFactory.getLogger(PaymentEventPublisher.class);
 
     private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ProducerFactory<String, Object> producerFactory;
+    private final KafkaPublisherProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Semaphore inFlight;
+    private final Map<String, KafkaTemplate<String, Object>> templates = new ConcurrentHashMap<>();
+    // Retry re-routing must not run on the producer I/O thread, which a blocking send would stall
+    private final ExecutorService callbackExecutor;
 
     @Value("${topic.payment.success}")
     private String successTopic;
@@ -23,37 +52,135 @@ public class PaymentEventPublisher {
     @Value("${topic.payment.retry:payment.retry}")
     private String retryTopic;
 
-    public PaymentEventPublisher(KafkaTemplate<String, Object> kafkaTemplate) {
+    public PaymentEventPublisher(KafkaTemplate<String, Object> kafkaTemplate,
+                                 ProducerFactory<String, Object> producerFactory,
+                                 KafkaPublisherProperties properties,
+                                 MeterRegistry meterRegistry,
+                                 WorkerThreads workerThreads) {
         this.kafkaTemplate = kafkaTemplate;
+        this.producerFactory = producerFactory;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.inFlight = new Semaphore(properties.getMaxInFlight());
+        this.callbackExecutor = Executors.newSingleThreadExecutor(workerThreads.factory("kafka-publish-callback-"));
+        Gauge.builder("kafka.publish.in_flight", inFlight,
+                        semaphore -> properties.getMaxInFlight() - semaphore.availablePermits())
+                .register(meterRegistry);
     }
 
     public void publishPaymentSuccess(PaymentEvent event) {
-        try {
-            logger.info("✅ Publishing to topic {}: {}", successTopic, event);
-            kafkaTemplate.send(successTopic, event.getOrderId(), event);
-        } catch (Exception ex) {
-            logger.error("❌ Failed to publish payment.success for order {}: {}. Redirecting to retry topic.", event.getOrderId(), ex.getMessage());
-            sendToRetryTopic(event.getOrderId(), event);
-        }
+        logger.info("✅ Publishing to topic {}: {}", successTopic, event);
+        publishOrRetry(successTopic, event.getOrderId(), event);
     }
 
     public void publishPaymentFailedEvent(PaymentFailedEvent event) {
+        logger.info("❌ Publishing to topic {}: {}", failedTopic, event);
+        publishOrRetry(failedTopic, event.getOrderId(), event);
+    }
+
+    /**
+     * Sends a record and returns the broker acknowledgement. Used by the outbox relay, which
+     * handles failures itself by leaving the row unpublished.
+     */
+    public CompletableFuture<SendResult<String, Object>> send(String topic, String key, Object event) {
+        try {
+            if (!inFlight.tryAcquire(properties.getBackpressureTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                meterRegistry.counter("kafka.publish.backpressure.rejected", "topic", topic).increment();
+                return CompletableFuture.failedFuture(new IllegalStateException(
+                        "Too many unacknowledged Kafka sends (" + properties.getMaxInFlight() + ")"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<SendResult<String, Object>> future;
         try {
-            logger.info("❌ Publishing to topic {}: {}", failedTopic, event);
-            kafkaTemplate.send(failedTopic, event.getOrderId(), event);
-        } catch (Exception ex) {
-            logger.error("🔥 Failed to publish payment.failed for order {}: {}. Redirecting to retry topic.", event.getOrderId(), ex.getMessage());
-            sendToRetryTopic(event.getOrderId(), event);
+            future = templateFor(topic).send(topic, key, event);
+        } catch (RuntimeException ex) {
+            // Serialization errors, or max.block.ms exceeded while the producer buffer is full
+            inFlight.release();
+            recordError(topic, ex);
+            return CompletableFuture.failedFuture(ex);
+        }
+        return future.whenComplete((result, ex) -> {
+            inFlight.release();
+            Timer.builder("kafka.publish.latency")
+                    .tag("topic", topic)
+                    .tag("outcome", ex == null ? "acked" : "failed")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (ex != null) {
+                recordError(topic, ex);
+            }
+        });
+    }
+
+    /**
+     * Sends an event taken off the retry topic back to its original topic, without
+     * re-routing on failure; the retry consumer dead-letters whatever is not acknowledged.
+     */
+    public CompletableFuture<SendResult<String, Object>> republish(String key, Object event) {
+        String topic = topicFor(event);
+        if (topic == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Unknown object type in retry topic: " + (event == null ? "null" : event.getClass().getName())));
+        }
+        return send(topic, key, event);
+    }
+
+    /**
+     * The topic an event is published to, or null for anything that is not a payment event.
+     */
+    public String topicFor(Object event) {
+        if (event instanceof PaymentEvent) {
+            return successTopic;
+        }
+        if (event instanceof PaymentFailedEvent) {
+            return failedTopic;
         }
+        return null;
+    }
+
+    private void publishOrRetry(String topic, String key, Object event) {
+        send(topic, key, event).whenCompleteAsync((result, ex) -> {
+            if (ex != null) {
+                logger.error("❌ Failed to publish {} for order {}: {}. Redirecting to retry topic.", topic, key, ex.getMessage());
+                sendToRetryTopic(key, event);
+            }
+        }, callbackExecutor);
     }
 
     private void sendToRetryTopic(String key, Object event) {
-        try {
-            logger.info("📦 Sending to retry topic: {}", retryTopic);
-            kafkaTemplate.send(new ProducerRecord<>(retryTopic, key, event));
-        } catch (Exception ex) {
-            logger.error("🚨 Failed to send to retry topic as well: {}", ex.getMessage());
-            // Optional: persist to DB for manual replay or alert
+        logger.info("📦 Sending to retry topic: {}", retryTopic);
+        send(retryTopic, key, event).whenComplete((result, ex) -> {
+            if (ex != null) {
+                logger.error("🚨 Failed to send to retry topic as well: {}", ex.getMessage());
+            }
+        });
+    }
+
+    private KafkaTemplate<String, Object> templateFor(String topic) {
+        KafkaPublisherProperties.TopicSettings settings = properties.getTopics().get(topic);
+        if (settings == null) {
+            return kafkaTemplate;
         }
+        // Own producer so this topic's batching does not change anyone else's
+        return templates.computeIfAbsent(topic,
+                t -> new KafkaTemplate<>(producerFactory, settings.toProducerOverrides()));
+    }
+
+    private void recordError(String topic, Throwable ex) {
+        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+        meterRegistry.counter("kafka.publish.errors", "topic", topic,
+                "exception", cause.getClass().getSimpleName()).increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callbackExecutor.shutdown();
+        templates.values().forEach(KafkaTemplate::destroy);
     }
 }
@@ -19,6 +19,11 @@ public abstract class BaseModel {
     @Column(nullable = false)
     private LocalDateTime updatedAt;
 
+    // Optimistic lock: a stale entity save fails instead of overwriting a concurrent change
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @PrePersist
     protected void onCreate() {
         LocalDateTime now = LocalDateTime.now();
@@ -50,6 +55,14 @@ public abstract class BaseModel {
         this.updatedAt = updatedAt;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @PreUpdate
     protected void onUpdate() {
         this.updatedAt = LocalDateTime.now();
@@ -0,0 +1,185 @@
+package org.example.paymentservice.models;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Admin-requested re-drive of {@code retry_dead_letter_logs}. {@code lastProcessedId} is the
+ * checkpoint: a paused or interrupted job resumes with the next dead letter after it.
+ */
+@Entity
+@Table(name = "dead_letter_replay_jobs", indexes = {
+        @Index(name = "idx_replay_jobs_status", columnList = "status, leaseUntil")
+})
+public class DeadLetterReplayJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Filters; null means any
+    private String topic;
+    private String messageKey;
+    private LocalDateTime fromTime;
+    private LocalDateTime toTime;
+
+    @Column(nullable = false)
+    private int ratePerSecond;
+
+    @Column(nullable = false)
+    private int parallelism;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private ReplayJobStatus status;
+
+    @Column(nullable = false)
+    private long lastProcessedId;
+
+    @Column(nullable = false)
+    private long replayedCount;
+
+    @Column(nullable = false)
+    private long failedCount;
+
+    @Column(length = 1024)
+    private String lastError;
+
+    private LocalDateTime leaseUntil;
+    private String requestedBy;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    public String getMessageKey() {
+        return messageKey;
+    }
+
+    public void setMessageKey(String messageKey) {
+        this.messageKey = messageKey;
+    }
+
+    public LocalDateTime getFromTime() {
+        return fromTime;
+    }
+
+    public void setFromTime(LocalDateTime fromTime) {
+        this.fromTime = fromTime;
+    }
+
+    public LocalDateTime getToTime() {
+        return toTime;
+    }
+
+    public void setToTime(LocalDateTime toTime) {
+        this.toTime = toTime;
+    }
+
+    public int getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public void setRatePerSecond(int ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public ReplayJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ReplayJobStatus status) {
+        this.status = status;
+    }
+
+    public long getLastProcessedId() {
+        return lastProcessedId;
+    }
+
+    public void setLastProcessedId(long lastProcessedId) {
+        this.lastProcessedId = lastProcessedId;
+    }
+
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    public void setReplayedCount(long replayedCount) {
+        this.replayedCount = replayedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(LocalDateTime leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    public String getRequestedBy() {
+        return requestedBy;
+    }
+
+    public void setRequestedBy(String requestedBy) {
+        this.requestedBy = requestedBy;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
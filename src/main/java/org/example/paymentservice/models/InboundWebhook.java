@@ -0,0 +1,159 @@
+package org.example.paymentservice.models;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Verified webhook accepted by the ingestion endpoint and waiting to be processed
+ * off the request thread. The row is the durable queue entry: workers claim it by
+ * moving it from RECEIVED to PROCESSING.
+ */
+@Entity
+@Table(name = "inbound_webhooks",
+        uniqueConstraints = @UniqueConstraint(name = "uk_inbound_webhooks_provider_event", columnNames = {"provider", "eventId"}),
+        indexes = @Index(name = "idx_inbound_webhooks_status_updated", columnList = "status, updatedAt, id"))
+public class InboundWebhook {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String provider; // "stripe" or "razorpay"
+
+    @Column(nullable = false)
+    private String eventId;
+
+    private String orderId; // ordering key, null when the payload carries none
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Column(length = 1024)
+    private String signature;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private InboundWebhookStatus status;
+
+    private int attemptCount;
+
+    @Column(length = 1024)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime receivedAt;
+
+    private LocalDateTime updatedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public void setProvider(String provider) {
+        this.provider = provider;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public void setSignature(String signature) {
+        this.signature = signature;
+    }
+
+    public InboundWebhookStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(InboundWebhookStatus status) {
+        this.status = status;
+    }
+
+    public int getAttemptCount() {
+        return attemptCount;
+    }
+
+    public void setAttemptCount(int attemptCount) {
+        this.attemptCount = attemptCount;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getReceivedAt() {
+        return receivedAt;
+    }
+
+    public void setReceivedAt(LocalDateTime receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Ordering key used to route the event to a worker stripe.
+     */
+    public String orderingKey() {
+        return orderId != null && !orderId.isBlank() ? orderId : eventId;
+    }
+
+    public static InboundWebhook received(String provider, String eventId, String orderId,
+                                          String payload, String signature) {
+        InboundWebhook webhook = new InboundWebhook();
+        webhook.setProvider(provider);
+        webhook.setEventId(eventId);
+        webhook.setOrderId(orderId);
+        webhook.setPayload(payload);
+        webhook.setSignature(signature);
+        webhook.setStatus(InboundWebhookStatus.RECEIVED);
+        webhook.setAttemptCount(0);
+        webhook.setReceivedAt(LocalDateTime.now());
+        webhook.setUpdatedAt(LocalDateTime.now());
+        return webhook;
+    }
+}
@@ -0,0 +1,8 @@
+package org.example.paymentservice.models;
+
+public enum InboundWebhookStatus {
+    RECEIVED,
+    PROCESSING,
+    DONE,
+    FAILED
+}
@@ -5,7 +5,11 @@ import jakarta.persistence.*;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+        @Index(name = "uk_payments_order_id", columnList = "orderId", unique = true),
+        @Index(name = "idx_payments_status_created", columnList = "status, createdAt, id"),
+        @Index(name = "idx_payments_user_created", columnList = "userId, createdAt, id")
+})
 public class Payment extends BaseModel {
 
     @Column(nullable = false)
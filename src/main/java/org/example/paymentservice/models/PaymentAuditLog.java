@@ -7,7 +7,8 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "payment_audit_logs")
+@Table(name = "payment_audit_logs", indexes =
+        @Index(name = "idx_audit_logs_order_ts", columnList = "orderId, timestamp"))
 public class PaymentAuditLog {
 
     @Id
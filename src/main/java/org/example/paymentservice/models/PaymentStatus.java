@@ -1,9 +1,29 @@
 package org.example.paymentservice.models;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum PaymentStatus {
     INITIATED,
     SUCCEEDED,
     FAILED,
     LINK_CREATED,
-    SUCCESS
+    SUCCESS;
+
+    /**
+     * Allowed status changes. SUCCEEDED (and the legacy SUCCESS) are terminal; FAILED can
+     * still be paid late by the gateway or get a fresh link.
+     */
+    public Set<PaymentStatus> nextStatuses() {
+        return switch (this) {
+            case INITIATED -> EnumSet.of(LINK_CREATED, SUCCEEDED, FAILED);
+            case LINK_CREATED -> EnumSet.of(SUCCEEDED, FAILED);
+            case FAILED -> EnumSet.of(LINK_CREATED, SUCCEEDED);
+            case SUCCEEDED, SUCCESS -> EnumSet.noneOf(PaymentStatus.class);
+        };
+    }
+
+    public boolean canTransitionTo(PaymentStatus next) {
+        return nextStatuses().contains(next);
+    }
 }
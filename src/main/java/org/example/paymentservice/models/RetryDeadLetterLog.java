@@ -5,19 +5,27 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "retry_dead_letter_logs")
+@Table(name = "retry_dead_letter_logs", indexes = {
+        @Index(name = "idx_dead_letters_replay", columnList = "replayedAt, id"),
+        @Index(name = "idx_dead_letters_topic_replay", columnList = "topic, replayedAt, id"),
+        @Index(name = "idx_dead_letters_key_replay", columnList = "message_key, replayedAt, id")
+})
 public class RetryDeadLetterLog {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    private String topic;
+    private String topic; // destination topic of the event; the retry topic for undeserializable records
+    @Column(name = "message_key") // "key" is reserved in MySQL
     private String key;
     @Column(columnDefinition = "TEXT")
-    private String payload;
+    private String payload; // JSON
+    private String payloadType; // simple class name of the event; null if not replayable
+    @Column(length = 1024)
     private String errorMessage;
     private LocalDateTime createdAt;
+    private LocalDateTime replayedAt;
 
     public Long getId() {
         return id;
@@ -66,4 +74,20 @@ public class RetryDeadLetterLog {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public String getPayloadType() {
+        return payloadType;
+    }
+
+    public void setPayloadType(String payloadType) {
+        this.payloadType = payloadType;
+    }
+
+    public LocalDateTime getReplayedAt() {
+        return replayedAt;
+    }
+
+    public void setReplayedAt(LocalDateTime replayedAt) {
+        this.replayedAt = replayedAt;
+    }
 }
@@ -9,7 +9,9 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "webhook_events")
+@Table(name = "webhook_events", indexes = {
+        @Index(name = "idx_webhook_events_processed", columnList = "processedAt, id")
+})
 @AllArgsConstructor
 @NoArgsConstructor
 public class WebhookEvent {
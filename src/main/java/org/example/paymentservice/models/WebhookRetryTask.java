@@ -7,7 +7,8 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "webhook_retry_tasks")
+@Table(name = "webhook_retry_tasks", indexes =
+        @Index(name = "idx_webhook_retry_due", columnList = "processed, deadLettered, nextAttemptAt, id"))
 public class WebhookRetryTask {
 
     @Id
@@ -15,10 +16,19 @@ public class WebhookRetryTask {
     private Long id;
 
     private String provider; // "stripe" or "razorpay"
+    @Column(columnDefinition = "TEXT")
     private String payload; // full payload
+    @Column(length = 1024)
     private String signature; // X-Razorpay-Signature or Stripe-Signature
     private int attemptCount;
     private boolean processed;
+    private boolean deadLettered; // attempts exhausted, no further retries
+
+    private LocalDateTime nextAttemptAt;
+    private LocalDateTime leaseUntil; // set while a scheduler instance owns the task
+
+    @Column(length = 1024)
+    private String lastError;
 
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
@@ -71,6 +81,38 @@ public class WebhookRetryTask {
         this.processed = processed;
     }
 
+    public boolean isDeadLettered() {
+        return deadLettered;
+    }
+
+    public void setDeadLettered(boolean deadLettered) {
+        this.deadLettered = deadLettered;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public LocalDateTime getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(LocalDateTime leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -94,6 +136,7 @@ public class WebhookRetryTask {
         task.setSignature(sigHeader);
         task.setAttemptCount(0);
         task.setProcessed(false);
+        task.setNextAttemptAt(LocalDateTime.now());
         task.setCreatedAt(LocalDateTime.now());
         task.setUpdatedAt(LocalDateTime.now());
         return task;
@@ -106,6 +149,7 @@ public class WebhookRetryTask {
         task.setSignature(sigHeader);
         task.setAttemptCount(0);
         task.setProcessed(false);
+        task.setNextAttemptAt(LocalDateTime.now());
         task.setCreatedAt(LocalDateTime.now());
         task.setUpdatedAt(LocalDateTime.now());
         return task;
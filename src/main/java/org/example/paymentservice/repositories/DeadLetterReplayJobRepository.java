@@ -0,0 +1,49 @@
+package org.example.paymentservice.repositories;
+
+import org.example.paymentservice.models.DeadLetterReplayJob;
+import org.example.paymentservice.models.ReplayJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface DeadLetterReplayJobRepository extends JpaRepository<DeadLetterReplayJob, Long> {
+
+    @Query("SELECT j.id FROM DeadLetterReplayJob j WHERE j.status = :status " +
+            "AND (j.leaseUntil IS NULL OR j.leaseUntil < :now) ORDER BY j.id")
+    List<Long> findClaimable(@Param("status") ReplayJobStatus status, @Param("now") LocalDateTime now);
+
+    /**
+     * Takes (or extends) the lease on a running job; 0 if another replica holds it or the job
+     * is no longer running.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE DeadLetterReplayJob j SET j.leaseUntil = :leaseUntil, j.updatedAt = :now " +
+            "WHERE j.id = :id AND j.status = org.example.paymentservice.models.ReplayJobStatus.RUNNING " +
+            "AND (j.leaseUntil IS NULL OR j.leaseUntil < :now OR j.leaseUntil = :currentLease)")
+    int lease(@Param("id") Long id, @Param("currentLease") LocalDateTime currentLease,
+              @Param("leaseUntil") LocalDateTime leaseUntil, @Param("now") LocalDateTime now);
+
+    /**
+     * Saves progress after a chunk; the status is left alone so a concurrent pause sticks.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE DeadLetterReplayJob j SET j.lastProcessedId = :lastId, " +
+            "j.replayedCount = j.replayedCount + :replayed, j.failedCount = j.failedCount + :failed, " +
+            "j.lastError = COALESCE(:error, j.lastError), j.updatedAt = :now WHERE j.id = :id")
+    int checkpoint(@Param("id") Long id, @Param("lastId") long lastId, @Param("replayed") long replayed,
+                   @Param("failed") long failed, @Param("error") String error, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE DeadLetterReplayJob j SET j.status = :to, j.leaseUntil = null, j.updatedAt = :now " +
+            "WHERE j.id = :id AND j.status = :from")
+    int transition(@Param("id") Long id, @Param("from") ReplayJobStatus from,
+                   @Param("to") ReplayJobStatus to, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,56 @@
+package org.example.paymentservice.repositories;
+
+import org.example.paymentservice.models.EventOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface EventOutboxRepository extends JpaRepository<EventOutbox, Long> {
+
+    /**
+     * Locks the next unpublished, unleased rows. A row is skipped while an older row for the
+     * same key is leased by another relay, which keeps per-key publish order across replicas.
+     * Must run inside a transaction.
+     */
+    @Query(value = "SELECT e.id FROM event_outbox e " +
+            "WHERE e.published_at IS NULL AND (e.lease_until IS NULL OR e.lease_until < :now) " +
+            "AND NOT EXISTS (SELECT 1 FROM event_outbox p WHERE p.message_key = e.message_key " +
+            "    AND p.published_at IS NULL AND p.id < e.id AND p.lease_until >= :now) " +
+            "ORDER BY e.id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockNextBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE EventOutbox e SET e.leaseUntil = :leaseUntil WHERE e.id IN :ids")
+    int lease(@Param("ids") Collection<Long> ids, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE EventOutbox e SET e.publishedAt = :now, e.leaseUntil = null WHERE e.id IN :ids")
+    int markPublished(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE EventOutbox e SET e.leaseUntil = null, e.attemptCount = e.attemptCount + 1, e.lastError = :error " +
+            "WHERE e.id IN :ids")
+    int releaseFailed(@Param("ids") Collection<Long> ids, @Param("error") String error);
+
+    // Gives rows back for the next batch without counting an attempt
+    @Transactional
+    @Modifying
+    @Query("UPDATE EventOutbox e SET e.leaseUntil = null WHERE e.id IN :ids")
+    int release(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT MIN(e.createdAt) FROM EventOutbox e WHERE e.publishedAt IS NULL")
+    LocalDateTime findOldestUnpublishedCreatedAt();
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM EventOutbox e WHERE e.publishedAt < :before")
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+}
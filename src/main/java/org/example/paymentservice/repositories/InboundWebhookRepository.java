@@ -0,0 +1,30 @@
+package org.example.paymentservice.repositories;
+
+import org.example.paymentservice.models.InboundWebhook;
+import org.example.paymentservice.models.InboundWebhookStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface InboundWebhookRepository extends JpaRepository<InboundWebhook, Long> {
+
+    List<InboundWebhook> findTop100ByStatusAndUpdatedAtBeforeOrderByIdAsc(InboundWebhookStatus status, LocalDateTime before);
+
+    /**
+     * Moves a row between states only if it is still in the expected state, so a row is
+     * claimed by exactly one worker even when it is dispatched twice.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE InboundWebhook w SET w.status = :to, w.updatedAt = :now " +
+            "WHERE w.id = :id AND w.status = :from")
+    int transition(@Param("id") Long id,
+                   @Param("from") InboundWebhookStatus from,
+                   @Param("to") InboundWebhookStatus to,
+                   @Param("now") LocalDateTime now);
+}
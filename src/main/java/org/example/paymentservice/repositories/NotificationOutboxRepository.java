@@ -0,0 +1,35 @@
+package org.example.paymentservice.repositories;
+
+import org.example.paymentservice.models.NotificationOutbox;
+import org.example.paymentservice.models.NotificationStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+    List<NotificationOutbox> findByStatusAndNextAttemptAtBeforeOrderByIdAsc(NotificationStatus status,
+                                                                            LocalDateTime before,
+                                                                            Limit limit);
+
+    List<NotificationOutbox> findByStatusAndUpdatedAtBefore(NotificationStatus status, LocalDateTime before);
+
+    long countByStatus(NotificationStatus status);
+
+    boolean existsByDedupKey(String dedupKey);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE NotificationOutbox n SET n.status = :to, n.updatedAt = :now " +
+            "WHERE n.id = :id AND n.status = :from")
+    int transition(@Param("id") Long id,
+                   @Param("from") NotificationStatus from,
+                   @Param("to") NotificationStatus to,
+                   @Param("now") LocalDateTime now);
+}
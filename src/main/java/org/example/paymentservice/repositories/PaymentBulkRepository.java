@@ -0,0 +1,87 @@
+package org.example.paymentservice.repositories;
+
+import org.example.paymentservice.models.PaymentStatus;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Set-based JDBC operations on {@code payments} for jobs that touch many rows at once,
+ * where loading entities into the persistence context would be too expensive.
+ */
+@Repository
+public class PaymentBulkRepository {
+
+    public record PaymentRow(Long id, String orderId, String userId, String provider, Long amount,
+                             String currency, String externalPaymentId, LocalDateTime createdAt) {}
+
+    private static final String SELECT_STALE =
+            "SELECT id, order_id, user_id, payment_provider, amount, currency, external_payment_id, created_at " +
+            "FROM payments WHERE status = :status AND created_at < :cutoff ";
+
+    private static final String AFTER_CURSOR =
+            "AND (created_at > :afterCreatedAt OR (created_at = :afterCreatedAt AND id > :afterId)) ";
+
+    private static final String ORDER_AND_LOCK =
+            "ORDER BY created_at, id LIMIT :limit FOR UPDATE SKIP LOCKED";
+
+    private static final RowMapper<PaymentRow> ROW_MAPPER = (rs, i) -> new PaymentRow(
+            rs.getLong("id"),
+            rs.getString("order_id"),
+            rs.getString("user_id"),
+            rs.getString("payment_provider"),
+            rs.getObject("amount", Long.class),
+            rs.getString("currency"),
+            rs.getString("external_payment_id"),
+            rs.getObject("created_at", LocalDateTime.class)
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public PaymentBulkRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Locks the next chunk of payments in {@code status} created before {@code cutoff}, walking
+     * the (status, created_at, id) index from the given cursor. Rows locked by another replica
+     * are skipped. Must run inside a transaction.
+     *
+     * @param after last row of the previous chunk, or null for the first chunk
+     */
+    public List<PaymentRow> lockChunk(PaymentStatus status, LocalDateTime cutoff, PaymentRow after, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("status", status.name())
+                .addValue("cutoff", cutoff)
+                .addValue("limit", limit);
+        String sql = SELECT_STALE;
+        if (after != null) {
+            sql += AFTER_CURSOR;
+            params.addValue("afterCreatedAt", after.createdAt()).addValue("afterId", after.id());
+        }
+        return jdbcTemplate.query(sql + ORDER_AND_LOCK, params, ROW_MAPPER);
+    }
+
+    /**
+     * Moves the given payments from {@code from} to {@code to} in one statement; rows that are
+     * no longer in {@code from} are left untouched.
+     */
+    public int updateStatus(Collection<Long> ids, PaymentStatus from, PaymentStatus to, LocalDateTime now) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(
+                "UPDATE payments SET status = :to, updated_at = :now, version = version + 1 " +
+                        "WHERE id IN (:ids) AND status = :from",
+                new MapSqlParameterSource()
+                        .addValue("to", to.name())
+                        .addValue("from", from.name())
+                        .addValue("now", now)
+                        .addValue("ids", ids));
+    }
+}
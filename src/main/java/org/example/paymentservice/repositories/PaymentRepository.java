@@ -2,8 +2,13 @@ package org.example.paymentservice.repositories;
 
 import org.example.paymentservice.models.Payment;
 import org.example.paymentservice.models.PaymentStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -14,6 +19,70 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Payment findByOrderId(String orderId);
     List<Payment> findByUserId(String userId);
 
+    /**
+     * Keyset page of a user's payments, newest first, served by (user_id, created_at, id).
+     * Null filters and a null cursor are ignored.
+     */
+    @Query("SELECT p FROM Payment p WHERE p.userId = :userId " +
+            "AND (:status IS NULL OR p.status = :status) " +
+            "AND (:from IS NULL OR p.createdAt >= :from) " +
+            "AND (:to IS NULL OR p.createdAt < :to) " +
+            "AND (:cursorCreatedAt IS NULL OR p.createdAt < :cursorCreatedAt " +
+            "     OR (p.createdAt = :cursorCreatedAt AND p.id < :cursorId)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findPageByUserId(@Param("userId") String userId,
+                                   @Param("status") PaymentStatus status,
+                                   @Param("from") LocalDateTime from,
+                                   @Param("to") LocalDateTime to,
+                                   @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                   @Param("cursorId") Long cursorId,
+                                   Limit limit);
 
-}
+    interface ExportRow {
+        Long getId();
+        String getOrderId();
+        String getExternalPaymentId();
+        PaymentStatus getStatus();
+        Long getAmount();
+        String getCurrency();
+        String getPaymentProvider();
+        LocalDateTime getCreatedAt();
+    }
+
+    /**
+     * Same keyset page as {@link #findPageByUserId} as plain rows rather than entities, so an
+     * export does not accumulate managed payments in the (open-in-view) persistence context.
+     */
+    @Query("SELECT p.id AS id, p.orderId AS orderId, p.externalPaymentId AS externalPaymentId, " +
+            "p.status AS status, p.amount AS amount, p.currency AS currency, " +
+            "p.paymentProvider AS paymentProvider, p.createdAt AS createdAt " +
+            "FROM Payment p WHERE p.userId = :userId " +
+            "AND (:status IS NULL OR p.status = :status) " +
+            "AND (:from IS NULL OR p.createdAt >= :from) " +
+            "AND (:to IS NULL OR p.createdAt < :to) " +
+            "AND (:cursorCreatedAt IS NULL OR p.createdAt < :cursorCreatedAt " +
+            "     OR (p.createdAt = :cursorCreatedAt AND p.id < :cursorId)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<ExportRow> findExportPageByUserId(@Param("userId") String userId,
+                                           @Param("status") PaymentStatus status,
+                                           @Param("from") LocalDateTime from,
+                                           @Param("to") LocalDateTime to,
+                                           @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                           @Param("cursorId") Long cursorId,
+                                           Limit limit);
 
+    /**
+     * Compare-and-set on the status: applies only if the row is still in {@code from}. A null
+     * {@code externalPaymentId} keeps the current one.
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Payment p SET p.status = :to, p.updatedAt = :now, p.version = p.version + 1, " +
+            "p.externalPaymentId = COALESCE(:externalPaymentId, p.externalPaymentId) " +
+            "WHERE p.orderId = :orderId AND p.status = :from")
+    int compareAndSetStatus(@Param("orderId") String orderId,
+                            @Param("from") PaymentStatus from,
+                            @Param("to") PaymentStatus to,
+                            @Param("externalPaymentId") String externalPaymentId,
+                            @Param("now") LocalDateTime now);
+}
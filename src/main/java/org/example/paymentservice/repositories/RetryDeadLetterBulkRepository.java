@@ -0,0 +1,40 @@
+package org.example.paymentservice.repositories;
+
+import org.example.paymentservice.models.RetryDeadLetterLog;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Batched inserts into {@code retry_dead_letter_logs}; Hibernate cannot batch them because of
+ * the IDENTITY key.
+ */
+@Repository
+public class RetryDeadLetterBulkRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO retry_dead_letter_logs (topic, message_key, payload, payload_type, error_message, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RetryDeadLetterBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertAll(List<RetryDeadLetterLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, logs, logs.size(), (ps, log) -> {
+            ps.setString(1, log.getTopic());
+            ps.setString(2, log.getKey());
+            ps.setString(3, log.getPayload());
+            ps.setString(4, log.getPayloadType());
+            ps.setString(5, log.getErrorMessage());
+            ps.setTimestamp(6, Timestamp.valueOf(log.getCreatedAt()));
+        });
+    }
+}
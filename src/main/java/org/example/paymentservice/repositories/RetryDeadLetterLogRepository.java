@@ -1,6 +1,38 @@
 package org.example.paymentservice.repositories;
 
 import org.example.paymentservice.models.RetryDeadLetterLog;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface RetryDeadLetterLogRepository extends JpaRepository<RetryDeadLetterLog, Long> {}
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface RetryDeadLetterLogRepository extends JpaRepository<RetryDeadLetterLog, Long> {
+
+    /**
+     * Next dead letters for a replay job in id order, starting after its checkpoint. Null
+     * filters are ignored.
+     */
+    @Query("SELECT d FROM RetryDeadLetterLog d WHERE d.id > :afterId AND d.replayedAt IS NULL " +
+            "AND (:topic IS NULL OR d.topic = :topic) " +
+            "AND (:key IS NULL OR d.key = :key) " +
+            "AND (:from IS NULL OR d.createdAt >= :from) " +
+            "AND (:to IS NULL OR d.createdAt < :to) " +
+            "ORDER BY d.id")
+    List<RetryDeadLetterLog> findReplayChunk(@Param("afterId") long afterId,
+                                             @Param("topic") String topic,
+                                             @Param("key") String key,
+                                             @Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to,
+                                             Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE RetryDeadLetterLog d SET d.replayedAt = :now WHERE d.id IN :ids")
+    int markReplayed(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+}
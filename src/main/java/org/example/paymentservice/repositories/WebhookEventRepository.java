@@ -1,12 +1,35 @@
 package org.example.paymentservice.repositories;
 
 import org.example.paymentservice.models.WebhookEvent;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 public interface WebhookEventRepository extends JpaRepository<WebhookEvent, Long> {
     boolean existsByEventId(String eventId);
     Optional<WebhookEvent> findByEventId(String eventId);
-}
 
+    interface EventKey {
+        Long getId();
+        String getEventId();
+        LocalDateTime getProcessedAt();
+    }
+
+    // Keyset walk over the primary key, used to (re)load the event-id filter
+    @Query("SELECT e.id AS id, e.eventId AS eventId, e.processedAt AS processedAt FROM WebhookEvent e " +
+            "WHERE e.id > :afterId ORDER BY e.id")
+    List<EventKey> findKeysAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Keyset walk over (processed_at, id) from a point in time, used for the filter's periodic catch-up
+    @Query("SELECT e.id AS id, e.eventId AS eventId, e.processedAt AS processedAt FROM WebhookEvent e " +
+            "WHERE e.processedAt > :afterTime OR (e.processedAt = :afterTime AND e.id > :afterId) " +
+            "ORDER BY e.processedAt, e.id")
+    List<EventKey> findKeysProcessedAfter(@Param("afterTime") LocalDateTime afterTime,
+                                          @Param("afterId") Long afterId,
+                                          Limit limit);
+}
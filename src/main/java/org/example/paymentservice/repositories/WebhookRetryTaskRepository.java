@@ -2,11 +2,29 @@ package org.example.paymentservice.repositories;
 
 import org.example.paymentservice.models.WebhookRetryTask;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface WebhookRetryTaskRepository extends JpaRepository<WebhookRetryTask, Long> {
     List<WebhookRetryTask> findByProcessedFalse();
 
-    List<WebhookRetryTask> findTop10ByProcessedFalseOrderByCreatedAtAsc();
+    /**
+     * Locks due, unleased tasks; rows locked by another replica are skipped.
+     * Must run inside a transaction, followed by {@link #lease}.
+     */
+    @Query(value = "SELECT id FROM webhook_retry_tasks " +
+            "WHERE processed = false AND dead_lettered = false " +
+            "AND (next_attempt_at IS NULL OR next_attempt_at <= :now) " +
+            "AND (lease_until IS NULL OR lease_until < :now) " +
+            "ORDER BY next_attempt_at, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockDueTasks(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE WebhookRetryTask t SET t.leaseUntil = :leaseUntil WHERE t.id IN :ids")
+    int lease(@Param("ids") Collection<Long> ids, @Param("leaseUntil") LocalDateTime leaseUntil);
 }
@@ -0,0 +1,41 @@
+package org.example.paymentservice.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.example.paymentservice.exceptions.RateLimitExceededException;
+import org.example.paymentservice.services.RateLimiterService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+@Aspect
+@Component
+public class RateLimitAspect {
+
+    @Autowired
+    private RateLimiterService rateLimiterService;
+
+    @Before("@annotation(rateLimited)")
+    public void checkRateLimit(RateLimited rateLimited) {
+        RateLimiterService.Decision decision = rateLimiterService.tryConsume(rateLimited.value(), clientKey());
+        if (!decision.allowed()) {
+            throw new RateLimitExceededException(rateLimited.value(), decision.retryAfter());
+        }
+    }
+
+    // JWT subject when authenticated, otherwise the caller's address
+    private String clientKey() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated() && authentication.getName() != null) {
+            return "sub:" + authentication.getName();
+        }
+        ServletRequestAttributes attrs = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attrs == null) throw new RuntimeException("Cannot access request context");
+        HttpServletRequest request = attrs.getRequest();
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.paymentservice.security;
+
+import java.lang.annotation.*;
+
+/**
+ * Applies the named {@code rate-limit.policies} entry per authenticated client.
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimited {
+    String value();
+}
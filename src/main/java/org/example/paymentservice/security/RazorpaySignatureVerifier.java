@@ -0,0 +1,137 @@
+package org.example.paymentservice.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Verifies {@code X-Razorpay-Signature} (hex HMAC-SHA256 of the raw body) against the
+ * current webhook secret and any previous secrets still accepted during a rotation.
+ * Verifications borrow an initialized {@link Mac} per secret plus scratch buffers from a
+ * bounded pool, so the common case does no provider lookup or key setup, and the comparison
+ * is constant-time. The pool is shared rather than per thread because virtual threads are
+ * created per request and would never reuse thread-local state; when it is empty a fresh
+ * state is built, and states beyond its capacity are dropped on return.
+ */
+@Component
+public class RazorpaySignatureVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 32;
+
+    private final List<SecretKeySpec> keys;
+    private final BlockingQueue<VerifierState> pool;
+    private final Counter matchedCurrent;
+    private final Counter matchedPrevious;
+    private final Counter rejected;
+
+    public RazorpaySignatureVerifier(@Value("${razorpay.webhook.secret}") String currentSecret,
+                                     @Value("${razorpay.webhook.previous-secrets:}") List<String> previousSecrets,
+                                     @Value("${razorpay.webhook.verifier-pool-size:64}") int poolSize,
+                                     MeterRegistry meterRegistry) {
+        List<SecretKeySpec> active = new ArrayList<>();
+        active.add(new SecretKeySpec(currentSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+        for (String secret : previousSecrets) {
+            if (secret != null && !secret.isBlank()) {
+                active.add(new SecretKeySpec(secret.trim().getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            }
+        }
+        this.keys = List.copyOf(active);
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+
+        this.matchedCurrent = meterRegistry.counter("webhook.signature.razorpay", "result", "current");
+        this.matchedPrevious = meterRegistry.counter("webhook.signature.razorpay", "result", "previous");
+        this.rejected = meterRegistry.counter("webhook.signature.razorpay", "result", "invalid");
+    }
+
+    public boolean verify(String payload, String signatureHex) {
+        if (payload == null) {
+            rejected.increment();
+            return false;
+        }
+        return verify(payload.getBytes(StandardCharsets.UTF_8), signatureHex);
+    }
+
+    public boolean verify(byte[] payload, String signatureHex) {
+        VerifierState state = pool.poll();
+        if (state == null) {
+            state = new VerifierState(keys);
+        }
+        try {
+            return verify(state, payload, signatureHex);
+        } finally {
+            pool.offer(state);
+        }
+    }
+
+    private boolean verify(VerifierState state, byte[] payload, String signatureHex) {
+        if (!decodeHex(signatureHex, state.received)) {
+            rejected.increment();
+            return false;
+        }
+        for (int i = 0; i < state.macs.length; i++) {
+            Mac mac = state.macs[i];
+            try {
+                mac.update(payload);
+                mac.doFinal(state.computed, 0);
+            } catch (GeneralSecurityException ex) {
+                // Cannot happen with a correctly sized buffer; Mac is reset by doFinal either way
+                mac.reset();
+                continue;
+            }
+            if (MessageDigest.isEqual(state.computed, state.received)) {
+                (i == 0 ? matchedCurrent : matchedPrevious).increment();
+                return true;
+            }
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Decodes a 64-char hex signature (either case) into {@code out}; false if malformed.
+     */
+    static boolean decodeHex(String hex, byte[] out) {
+        if (hex == null || hex.length() != SIGNATURE_BYTES * 2) {
+            return false;
+        }
+        for (int i = 0; i < SIGNATURE_BYTES; i++) {
+            int hi = Character.digit(hex.charAt(2 * i), 16);
+            int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                return false;
+            }
+            out[i] = (byte) ((hi << 4) | lo);
+        }
+        return true;
+    }
+
+    private static final class VerifierState {
+        final Mac[] macs;
+        final byte[] received = new byte[SIGNATURE_BYTES];
+        final byte[] computed = new byte[SIGNATURE_BYTES];
+
+        VerifierState(List<SecretKeySpec> keys) {
+            macs = new Mac[keys.size()];
+            try {
+                for (int i = 0; i < keys.size(); i++) {
+                    macs[i] = Mac.getInstance(ALGORITHM);
+                    macs[i].init(keys.get(i));
+                }
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("HmacSHA256 unavailable", ex);
+            }
+        }
+    }
+}
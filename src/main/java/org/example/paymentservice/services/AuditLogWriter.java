@@ -0,0 +1,269 @@
+package org.example.paymentservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.paymentservice.configs.WorkerThreads;
+import org.example.paymentservice.models.PaymentAuditLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes {@code payment_audit_logs} rows with JDBC batches (multi-row INSERTs with
+ * {@code rewriteBatchedStatements}) instead of one IDENTITY insert per entity save.
+ * <ul>
+ *   <li>SYNC entries are part of the caller's transaction: they are collected per transaction
+ *   and inserted in one batch just before it commits, so the audit row commits or rolls back
+ *   with the status change it describes. Outside a transaction they are inserted immediately.</li>
+ *   <li>ASYNC entries go into a bounded buffer that a background thread flushes when
+ *   {@code audit.writer.batch-size} entries are waiting or every {@code flush-interval}. A full
+ *   buffer falls back to a synchronous insert. Each batch is inserted in its own transaction, so a
+ *   failure leaves nothing behind and the batch can be retried whole; after
+ *   {@code batch-attempts} failures it is written row by row, and rows that still fail are logged
+ *   with their contents and counted under {@code audit.writer.rejected} so one bad row cannot
+ *   block the rest. On shutdown the buffer is drained, by the caller if the flusher runs out of
+ *   time.</li>
+ * </ul>
+ * Which mode a category uses is configured with {@code audit.writer.durability.*}.
+ */
+@Service
+public class AuditLogWriter {
+
+    public enum Category {
+        // Status changes that move or settle money
+        MONEY_MOVEMENT,
+        INFORMATIONAL
+    }
+
+    public enum Durability {
+        SYNC,
+        ASYNC
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO payment_audit_logs (order_id, user_id, provider, amount, currency, " +
+            "external_payment_id, action, timestamp, details) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WorkerThreads workerThreads;
+    private final BlockingQueue<PaymentAuditLog> buffer;
+    private final Timer flushTimer;
+    private final DistributionSummary flushSize;
+    private final Counter overflowCounter;
+    private final Counter flushFailures;
+    private final Counter rejectedCounter;
+    private Thread flusher;
+    private volatile boolean running = true;
+
+    @Value("${audit.writer.durability.money-movement:SYNC}")
+    private Durability moneyMovementDurability;
+
+    @Value("${audit.writer.durability.informational:ASYNC}")
+    private Durability informationalDurability;
+
+    @Value("${audit.writer.batch-size:200}")
+    private int batchSize;
+
+    @Value("${audit.writer.flush-interval:200ms}")
+    private Duration flushInterval;
+
+    @Value("${audit.writer.batch-attempts:3}")
+    private int batchAttempts;
+
+    @Value("${audit.writer.retry-backoff:1s}")
+    private Duration retryBackoff;
+
+    @Value("${audit.writer.shutdown-timeout:10s}")
+    private Duration shutdownTimeout;
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          TransactionTemplate transactionTemplate,
+                          WorkerThreads workerThreads,
+                          MeterRegistry meterRegistry,
+                          @Value("${audit.writer.buffer-capacity:10000}") int bufferCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.workerThreads = workerThreads;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.flushTimer = meterRegistry.timer("audit.writer.flush.latency");
+        this.flushSize = DistributionSummary.builder("audit.writer.flush.size").register(meterRegistry);
+        this.overflowCounter = meterRegistry.counter("audit.writer.overflow");
+        this.flushFailures = meterRegistry.counter("audit.writer.flush.failures");
+        this.rejectedCounter = meterRegistry.counter("audit.writer.rejected");
+        Gauge.builder("audit.writer.buffer.depth", buffer, BlockingQueue::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = workerThreads.factory("audit-writer-").newThread(this::flushLoop);
+        flusher.start();
+    }
+
+    public void write(PaymentAuditLog log, Category category) {
+        Durability durability = category == Category.MONEY_MOVEMENT ? moneyMovementDurability : informationalDurability;
+        if (durability == Durability.SYNC) {
+            writeInTransaction(log);
+        } else if (!running || !buffer.offer(log)) {
+            // Never drop an entry: pay for a direct insert instead
+            overflowCounter.increment();
+            insertBatch(List.of(log));
+        }
+    }
+
+    /**
+     * Inserts the rows now with one JDBC batch, in the caller's transaction if there is one.
+     */
+    public void insertBatch(List<PaymentAuditLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, logs, logs.size(), (ps, log) -> {
+            ps.setString(1, log.getOrderId());
+            ps.setString(2, log.getUserId());
+            ps.setString(3, log.getProvider());
+            ps.setObject(4, log.getAmount());
+            ps.setString(5, log.getCurrency());
+            ps.setString(6, log.getExternalPaymentId());
+            ps.setString(7, log.getAction());
+            ps.setTimestamp(8, Timestamp.valueOf(log.getTimestamp()));
+            ps.setString(9, log.getDetails());
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeInTransaction(PaymentAuditLog log) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insertBatch(List.of(log));
+            return;
+        }
+        List<PaymentAuditLog> pending = (List<PaymentAuditLog>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<PaymentAuditLog> entries = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, entries);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    insertBatch(entries);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(AuditLogWriter.this);
+                }
+            });
+            pending = entries;
+        }
+        pending.add(log);
+    }
+
+    private void flushLoop() {
+        List<PaymentAuditLog> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    PaymentAuditLog first = buffer.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    // Give a burst up to one interval to fill the batch
+                    long deadline = System.nanoTime() + flushInterval.toNanos();
+                    while (batch.size() < batchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        PaymentAuditLog next = remaining > 0 ? buffer.poll(remaining, TimeUnit.NANOSECONDS) : buffer.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        buffer.drainTo(batch, batchSize - batch.size());
+                    }
+                }
+                flush(batch);
+                batch.clear();
+            } catch (InterruptedException ex) {
+                // Treated as shutdown: whatever is buffered is still flushed
+                running = false;
+            }
+        }
+    }
+
+    private void flush(List<PaymentAuditLog> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> insertBatch(batch)));
+                flushSize.record(batch.size());
+                return;
+            } catch (RuntimeException ex) {
+                flushFailures.increment();
+                if (attempt >= batchAttempts || !running) {
+                    logger.error("🚨 Failed to write {} audit entries as a batch, writing them one by one: {}",
+                            batch.size(), ex.getMessage());
+                    insertEach(batch);
+                    return;
+                }
+                logger.error("🚨 Failed to write {} audit entries, retrying in {}: {}",
+                        batch.size(), retryBackoff, ex.getMessage());
+                sleepQuietly(retryBackoff);
+            }
+        }
+    }
+
+    private void insertEach(List<PaymentAuditLog> batch) {
+        for (PaymentAuditLog log : batch) {
+            try {
+                insertBatch(List.of(log));
+            } catch (RuntimeException ex) {
+                rejectedCounter.increment();
+                logger.error("🚨 Rejected audit entry orderId={} userId={} provider={} amount={} currency={} " +
+                                "externalPaymentId={} action={} timestamp={} details={}: {}",
+                        log.getOrderId(), log.getUserId(), log.getProvider(), log.getAmount(), log.getCurrency(),
+                        log.getExternalPaymentId(), log.getAction(), log.getTimestamp(), log.getDetails(),
+                        ex.getMessage());
+            }
+        }
+    }
+
+    private void sleepQuietly(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException ex) {
+            running = false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.join(shutdownTimeout.toMillis());
+        if (flusher.isAlive()) {
+            logger.warn("⚠️ Audit writer still flushing after {}, writing {} buffered entries directly",
+                    shutdownTimeout, buffer.size());
+            List<PaymentAuditLog> batch = new ArrayList<>(batchSize);
+            while (buffer.drainTo(batch, batchSize) > 0) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+}
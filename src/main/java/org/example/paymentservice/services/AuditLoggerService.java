@@ -1,17 +1,17 @@
 package org.example.paymentservice.services;
 
 import org.example.paymentservice.models.PaymentAuditLog;
-import org.example.paymentservice.repositories.PaymentAuditLogRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Service
 public class AuditLoggerService {
 
     @Autowired
-    private PaymentAuditLogRepository auditLogRepository;
+    private AuditLogWriter auditLogWriter;
 
     public void log(String orderId, String userId, String provider,
                     Long amount, String currency, String externalPaymentId,
@@ -28,6 +28,14 @@ public class AuditLoggerService {
         log.setTimestamp(LocalDateTime.now());
         log.setDetails(details);
 
-        auditLogRepository.save(log);
+        auditLogWriter.write(log, AuditLogWriter.Category.INFORMATIONAL);
+    }
+
+    /**
+     * Writes many audit rows with one JDBC batch, immediately and in the caller's transaction.
+     * Hibernate cannot batch these inserts because of the IDENTITY key.
+     */
+    public void logBatch(List<PaymentAuditLog> logs) {
+        auditLogWriter.insertBatch(logs);
     }
 }
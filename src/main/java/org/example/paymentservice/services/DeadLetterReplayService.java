@@ -0,0 +1,91 @@
+package org.example.paymentservice.services;
+
+import org.example.paymentservice.dtos.DeadLetterReplayRequestDto;
+import org.example.paymentservice.models.DeadLetterReplayJob;
+import org.example.paymentservice.models.ReplayJobStatus;
+import org.example.paymentservice.repositories.DeadLetterReplayJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Creates and controls dead-letter replay jobs; {@link org.example.paymentservice.jobs.DeadLetterReplayRunner}
+ * does the re-publishing. Pause and resume are conditional status updates, so they are safe
+ * while a replica is mid-chunk: the runner re-reads the status before every chunk.
+ */
+@Service
+public class DeadLetterReplayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterReplayService.class);
+
+    private final DeadLetterReplayJobRepository jobRepository;
+
+    @Value("${dead-letter.replay.default-rate-per-second:50}")
+    private int defaultRatePerSecond;
+
+    @Value("${dead-letter.replay.max-rate-per-second:1000}")
+    private int maxRatePerSecond;
+
+    @Value("${dead-letter.replay.default-parallelism:4}")
+    private int defaultParallelism;
+
+    public DeadLetterReplayService(DeadLetterReplayJobRepository jobRepository) {
+        this.jobRepository = jobRepository;
+    }
+
+    public DeadLetterReplayJob create(DeadLetterReplayRequestDto request, String requestedBy) {
+        if (request.getFrom() != null && request.getTo() != null && !request.getFrom().isBefore(request.getTo())) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        DeadLetterReplayJob job = new DeadLetterReplayJob();
+        job.setTopic(blankToNull(request.getTopic()));
+        job.setMessageKey(blankToNull(request.getKey()));
+        job.setFromTime(request.getFrom());
+        job.setToTime(request.getTo());
+        job.setRatePerSecond(Math.min(maxRatePerSecond,
+                request.getRatePerSecond() != null ? request.getRatePerSecond() : defaultRatePerSecond));
+        job.setParallelism(request.getParallelism() != null ? request.getParallelism() : defaultParallelism);
+        job.setStatus(ReplayJobStatus.RUNNING);
+        job.setRequestedBy(requestedBy);
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        DeadLetterReplayJob saved = jobRepository.save(job);
+        logger.info("♻️ Dead-letter replay job {} created by {} (topic={}, key={}, {}..{}, {}/s x{})",
+                saved.getId(), requestedBy, saved.getTopic(), saved.getMessageKey(), saved.getFromTime(),
+                saved.getToTime(), saved.getRatePerSecond(), saved.getParallelism());
+        return saved;
+    }
+
+    public Optional<DeadLetterReplayJob> find(Long id) {
+        return jobRepository.findById(id);
+    }
+
+    public boolean pause(Long id) {
+        return transition(id, ReplayJobStatus.RUNNING, ReplayJobStatus.PAUSED);
+    }
+
+    /**
+     * Continues a paused or failed job from its checkpoint.
+     */
+    public boolean resume(Long id) {
+        return transition(id, ReplayJobStatus.PAUSED, ReplayJobStatus.RUNNING)
+                || transition(id, ReplayJobStatus.FAILED, ReplayJobStatus.RUNNING);
+    }
+
+    private boolean transition(Long id, ReplayJobStatus from, ReplayJobStatus to) {
+        boolean changed = jobRepository.transition(id, from, to, LocalDateTime.now()) == 1;
+        if (changed) {
+            logger.info("♻️ Dead-letter replay job {}: {} -> {}", id, from, to);
+        }
+        return changed;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.paymentservice.services;
+
+import org.example.paymentservice.models.NotificationOutbox;
+import org.example.paymentservice.repositories.NotificationOutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Records outgoing emails in {@code notification_outbox}; delivery happens later in
+ * {@link org.example.paymentservice.jobs.NotificationDispatcher}.
+ */
+@Service
+public class NotificationOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutboxService.class);
+
+    private final NotificationOutboxRepository outboxRepository;
+
+    public NotificationOutboxService(NotificationOutboxRepository outboxRepository) {
+        this.outboxRepository = outboxRepository;
+    }
+
+    /**
+     * Queues an email. The dedup key should identify the notification (type + order) so the
+     * same recipient is never mailed twice for it, e.g. when a webhook is redelivered.
+     */
+    public void enqueueEmail(String type, String orderId, String recipient, String subject, String body) {
+        if (recipient == null || recipient.isBlank()) {
+            logger.warn("No recipient for {} notification of order {}, skipping", type, orderId);
+            return;
+        }
+        String dedupKey = type + ":" + orderId + ":" + recipient.trim().toLowerCase();
+        // Checked up front: a unique-key violation inside the caller's transaction would roll back the payment update
+        if (outboxRepository.existsByDedupKey(dedupKey)) {
+            logger.info("Email {} already queued, skipping duplicate", dedupKey);
+            return;
+        }
+        try {
+            outboxRepository.save(NotificationOutbox.pendingEmail(dedupKey, recipient.trim(), subject, body));
+            logger.info("📨 Queued {} email for order {}", type, orderId);
+        } catch (DataIntegrityViolationException ex) {
+            logger.info("Email {} already queued, skipping duplicate", dedupKey);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.paymentservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.paymentservice.dtos.PaymentPageDto;
+import org.example.paymentservice.models.Payment;
+import org.example.paymentservice.models.PaymentStatus;
+import org.example.paymentservice.repositories.PaymentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Owns the Redis caches derived from {@code payments}: the per-order status
+ * ({@code payment:status:{orderId}}, write-through, with a short negative entry for unknown
+ * orders) and the first page of each user's history ({@code user:payments:{userId}}, evicted).
+ * Both are kept in step with every status transition via {@link PaymentStatusChangedEvent},
+ * which lets them use long TTLs.
+ */
+@Service
+public class PaymentCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentCacheService.class);
+
+    private static final String STATUS_KEY_PREFIX = "payment:status:";
+    private static final String USER_PAYMENTS_KEY_PREFIX = "user:payments:";
+    private static final String UNKNOWN_ORDER = "UNKNOWN";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final PaymentRepository paymentRepository;
+    private final MeterRegistry meterRegistry;
+    private final Counter statusInvalidations;
+    private final Counter userPageInvalidations;
+    private final Counter staleReads;
+
+    @Value("${cache.ttl.userPayments:1800}")
+    private long userPaymentsTtlSeconds;
+
+    @Value("${cache.ttl.payment-status:86400}")
+    private long statusTtlSeconds;
+
+    @Value("${cache.ttl.payment-status-negative:30}")
+    private long negativeTtlSeconds;
+
+    @Value("${cache.payment-status.stale-check-sample-rate:0.01}")
+    private double staleCheckSampleRate;
+
+    public PaymentCacheService(StringRedisTemplate stringRedisTemplate,
+                               RedisTemplate<String, Object> redisTemplate,
+                               PaymentRepository paymentRepository,
+                               MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisTemplate = redisTemplate;
+        this.paymentRepository = paymentRepository;
+        this.meterRegistry = meterRegistry;
+        this.statusInvalidations = meterRegistry.counter("payment.cache.invalidations", "cache", "order_status");
+        this.userPageInvalidations = meterRegistry.counter("payment.cache.invalidations", "cache", "user_payments");
+        this.staleReads = meterRegistry.counter("payment.cache.stale_reads");
+    }
+
+    /**
+     * Status for an order, or empty when no payment exists for it.
+     */
+    public Optional<PaymentStatus> getPaymentStatus(String orderId) {
+        String key = STATUS_KEY_PREFIX + orderId;
+        String cached = stringRedisTemplate.opsForValue().get(key);
+        if (UNKNOWN_ORDER.equals(cached)) {
+            record("negative_hit");
+            return Optional.empty();
+        }
+        if (cached != null) {
+            record("hit");
+            PaymentStatus status = PaymentStatus.valueOf(cached);
+            if (ThreadLocalRandom.current().nextDouble() < staleCheckSampleRate) {
+                return verify(orderId, status);
+            }
+            return Optional.of(status);
+        }
+
+        record("miss");
+        Payment payment = paymentRepository.findByOrderId(orderId);
+        // NX: never overwrite a value written through by a concurrent transition
+        if (payment == null) {
+            stringRedisTemplate.opsForValue().setIfAbsent(key, UNKNOWN_ORDER, Duration.ofSeconds(negativeTtlSeconds));
+            return Optional.empty();
+        }
+        stringRedisTemplate.opsForValue().setIfAbsent(key, payment.getStatus().name(), Duration.ofSeconds(statusTtlSeconds));
+        return Optional.of(payment.getStatus());
+    }
+
+    public PaymentPageDto getFirstPage(String userId) {
+        return (PaymentPageDto) redisTemplate.opsForValue().get(USER_PAYMENTS_KEY_PREFIX + userId);
+    }
+
+    public void putFirstPage(String userId, PaymentPageDto page) {
+        redisTemplate.opsForValue().set(USER_PAYMENTS_KEY_PREFIX + userId, page, Duration.ofSeconds(userPaymentsTtlSeconds));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        try {
+            Expiration ttl = Expiration.seconds(statusTtlSeconds);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (PaymentStatusChangedEvent.Change change : event.changes()) {
+                    redis.set(STATUS_KEY_PREFIX + change.orderId(), change.status().name(), ttl,
+                            RedisStringCommands.SetOption.upsert());
+                }
+                return null;
+            });
+            statusInvalidations.increment(event.changes().size());
+
+            Set<String> userKeys = new LinkedHashSet<>();
+            for (PaymentStatusChangedEvent.Change change : event.changes()) {
+                if (change.userId() != null) {
+                    userKeys.add(USER_PAYMENTS_KEY_PREFIX + change.userId());
+                }
+            }
+            if (!userKeys.isEmpty()) {
+                redisTemplate.delete(userKeys);
+                userPageInvalidations.increment(userKeys.size());
+            }
+        } catch (Exception ex) {
+            // TTLs still bound staleness if Redis is unavailable
+            logger.warn("⚠️ Failed to update payment caches for {} changes: {}", event.changes().size(), ex.getMessage());
+        }
+    }
+
+    private Optional<PaymentStatus> verify(String orderId, PaymentStatus cached) {
+        Payment payment = paymentRepository.findByOrderId(orderId);
+        PaymentStatus actual = payment != null ? payment.getStatus() : null;
+        if (actual != cached) {
+            staleReads.increment();
+            logger.warn("⚠️ Stale payment status cache for order {}: cached={}, actual={}", orderId, cached, actual);
+            String key = STATUS_KEY_PREFIX + orderId;
+            if (actual == null) {
+                stringRedisTemplate.opsForValue().set(key, UNKNOWN_ORDER, Duration.ofSeconds(negativeTtlSeconds));
+            } else {
+                stringRedisTemplate.opsForValue().set(key, actual.name(), Duration.ofSeconds(statusTtlSeconds));
+            }
+        }
+        return Optional.ofNullable(actual);
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("payment.cache.status.lookups", "result", result).increment();
+    }
+}
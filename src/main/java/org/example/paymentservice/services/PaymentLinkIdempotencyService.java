@@ -0,0 +1,170 @@
+package org.example.paymentservice.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.paymentservice.dtos.PaymentRequestDto;
+import org.example.paymentservice.dtos.PaymentResponseDto;
+import org.example.paymentservice.exceptions.IdempotencyConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Replays payment-link responses for repeated requests. The record at
+ * {@code payment:idem:{userId}:{key}} is {@code PENDING|fingerprint} while the first request
+ * talks to the gateway and {@code DONE|fingerprint|json} afterwards; the key is the
+ * {@code Idempotency-Key} header, or the orderId when there is none. Concurrent duplicates
+ * poll the record until the first request finishes. Failed attempts drop the record so the
+ * client may retry. Without Redis the unique orderId on {@code payments} still stops
+ * duplicates (see {@link PaymentProcessingService}).
+ */
+@Service
+public class PaymentLinkIdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentLinkIdempotencyService.class);
+
+    private static final String PENDING = "PENDING";
+    private static final String DONE = "DONE";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${payment.idempotency.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${payment.idempotency.ttl-ms:86400000}")
+    private long ttlMs;
+
+    @Value("${payment.idempotency.wait-ms:10000}")
+    private long waitMs;
+
+    @Value("${payment.idempotency.poll-ms:100}")
+    private long pollMs;
+
+    public PaymentLinkIdempotencyService(StringRedisTemplate redisTemplate,
+                                         ObjectMapper objectMapper,
+                                         MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public PaymentResponseDto execute(String userId, String idempotencyKey, PaymentRequestDto request,
+                                      Supplier<PaymentResponseDto> action) {
+        String key = "payment:idem:" + userId + ":"
+                + (idempotencyKey == null || idempotencyKey.isBlank() ? "order:" + request.getOrderId() : idempotencyKey);
+        String fingerprint = fingerprint(request);
+        long deadline = System.currentTimeMillis() + waitMs;
+
+        while (true) {
+            Boolean acquired;
+            String current;
+            try {
+                acquired = redisTemplate.opsForValue()
+                        .setIfAbsent(key, PENDING + "|" + fingerprint, Duration.ofMillis(leaseMs));
+                current = Boolean.TRUE.equals(acquired) ? null : redisTemplate.opsForValue().get(key);
+            } catch (DataAccessException ex) {
+                record("redis_unavailable");
+                logger.warn("⚠️ Payment idempotency store unavailable, relying on orderId uniqueness: {}", ex.getMessage());
+                return action.get();
+            }
+
+            if (Boolean.TRUE.equals(acquired)) {
+                record("executed");
+                return runAndStore(key, fingerprint, action);
+            }
+            if (current != null) {
+                String[] parts = current.split("\\|", 3);
+                if (!fingerprint.equals(parts.length > 1 ? parts[1] : null)) {
+                    record("key_reused");
+                    throw new IdempotencyConflictException("Idempotency key was already used for a different payment request");
+                }
+                if (DONE.equals(parts[0]) && parts.length == 3) {
+                    record("replayed");
+                    return read(parts[2]);
+                }
+            }
+            // Still pending elsewhere (or just released): wait for it rather than calling the gateway again
+            if (System.currentTimeMillis() >= deadline) {
+                record("in_flight_timeout");
+                throw new IdempotencyConflictException("Payment link for order " + request.getOrderId() + " is still being created");
+            }
+            sleep();
+        }
+    }
+
+    private PaymentResponseDto runAndStore(String key, String fingerprint, Supplier<PaymentResponseDto> action) {
+        PaymentResponseDto response;
+        try {
+            response = action.get();
+        } catch (RuntimeException ex) {
+            release(key);
+            throw ex;
+        }
+        if ("FAILED".equalsIgnoreCase(response.getStatus())) {
+            release(key);
+            return response;
+        }
+        try {
+            redisTemplate.opsForValue().set(key, DONE + "|" + fingerprint + "|" + objectMapper.writeValueAsString(response),
+                    Duration.ofMillis(ttlMs));
+        } catch (JsonProcessingException | DataAccessException ex) {
+            // The payments row still replays it
+            logger.warn("⚠️ Could not store payment link response for replay: {}", ex.getMessage());
+            release(key);
+        }
+        return response;
+    }
+
+    private void release(String key) {
+        try {
+            redisTemplate.delete(key);
+        } catch (DataAccessException ex) {
+            logger.warn("⚠️ Could not release payment idempotency key {}: {}", key, ex.getMessage());
+        }
+    }
+
+    private PaymentResponseDto read(String json) {
+        try {
+            return objectMapper.readValue(json, PaymentResponseDto.class);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Corrupt idempotency record", ex);
+        }
+    }
+
+    private static String fingerprint(PaymentRequestDto request) {
+        String canonical = request.getOrderId() + "|" + request.getAmount() + "|"
+                + request.getCurrency() + "|" + request.getGateway();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(pollMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Interrupted while waiting for an in-flight payment request");
+        }
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("payment.idempotency", "result", result).increment();
+    }
+}
@@ -5,17 +5,21 @@ import org.example.paymentservice.adapters.PaymentGatewayFactory;
 import org.example.paymentservice.dtos.PaymentRequestDto;
 import org.example.paymentservice.dtos.PaymentResponseDto;
 import org.example.paymentservice.dtos.TokenIntrospectionResponseDTO;
+import org.example.paymentservice.exceptions.IdempotencyConflictException;
 import org.example.paymentservice.models.Payment;
 import org.example.paymentservice.models.PaymentAuditLog;
 import org.example.paymentservice.models.PaymentStatus;
-import org.example.paymentservice.repositories.PaymentAuditLogRepository;
 import org.example.paymentservice.repositories.PaymentRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -26,55 +30,137 @@ public class PaymentProcessingService {
 
     @Autowired private PaymentRepository paymentRepository;
     @Autowired private PaymentGatewayFactory paymentGatewayFactory;
-    @Autowired private PaymentAuditLogRepository auditLogRepository;
+    @Autowired private AuditLogWriter auditLogWriter;
     @Autowired private TokenService tokenService;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+    @Autowired private PaymentLinkIdempotencyService idempotencyService;
+    @Autowired private PaymentStateMachine paymentStateMachine;
+
+    // A LINK_CREATED row without a gateway id this old is treated as a crashed attempt
+    @Value("${payment.idempotency.lease-ms:60000}")
+    private long abandonedAfterMs;
 
     public PaymentResponseDto createPaymentLink(PaymentRequestDto paymentRequest, String tokenHeader) {
+        return createPaymentLink(paymentRequest, tokenHeader, null);
+    }
+
+    /**
+     * Creates a payment link once per order. Retries with the same {@code Idempotency-Key}
+     * (or orderId) get the stored response back without another gateway call.
+     */
+    public PaymentResponseDto createPaymentLink(PaymentRequestDto paymentRequest, String tokenHeader, String idempotencyKey) {
         TokenIntrospectionResponseDTO token = tokenService.introspect(tokenHeader);
         String userId = token.getSub();
         String userEmail = token.getEmail(); // ✅ New
         String orderId = paymentRequest.getOrderId();
-        String provider = paymentRequest.getGateway();
 
         MDC.put("orderId", orderId);
         MDC.put("userId", userId);
-        MDC.put("provider", provider);
         MDC.put("correlationId", UUID.randomUUID().toString());
 
         try {
-            logger.info("Starting payment link creation for orderId: {}", orderId);
+            return idempotencyService.execute(userId, idempotencyKey, paymentRequest,
+                    () -> createOrReplay(paymentRequest, userId, userEmail));
+        } catch (Exception ex) {
+            logger.error("Failed to create payment link for orderId: {}. Error: {}", orderId, ex.getMessage(), ex);
+            throw ex;
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private PaymentResponseDto createOrReplay(PaymentRequestDto paymentRequest, String userId, String userEmail) {
+        String orderId = paymentRequest.getOrderId();
+        logger.info("Starting payment link creation for orderId: {}", orderId);
+
+        // orderId is unique: an existing row is either a finished link to replay, a request
+        // still talking to the gateway, or a failed/abandoned attempt that can be retried
+        Payment payment = paymentRepository.findByOrderId(orderId);
+        if (payment != null) {
+            if (!userId.equals(payment.getUserId())) {
+                throw new IdempotencyConflictException("Order " + orderId + " already has a payment");
+            }
+            if (payment.getExternalPaymentId() != null && payment.getStatus() != PaymentStatus.FAILED) {
+                logger.info("🔁 Replaying existing payment link for orderId: {}", orderId);
+                PaymentResponseDto replay = PaymentStatusServiceImpl.mapToResponseDto(payment);
+                replay.setMessage("Existing payment link");
+                return replay;
+            }
+            boolean abandoned = payment.getUpdatedAt() != null
+                    && payment.getUpdatedAt().isBefore(LocalDateTime.now().minus(Duration.ofMillis(abandonedAfterMs)));
+            if (payment.getStatus() != PaymentStatus.FAILED && !abandoned) {
+                throw new IdempotencyConflictException("Payment link for order " + orderId + " is still being created");
+            }
+        }
+
+        // May differ from the requested gateway when that one is failing over
+        PaymentGateway gateway = paymentGatewayFactory.getPaymentGateway(paymentRequest);
+        String provider = gateway.getName();
+        MDC.put("provider", provider);
 
-            Payment payment = new Payment();
+        if (payment == null) {
+            payment = new Payment();
             payment.setOrderId(orderId);
             payment.setUserId(userId);
-            payment.setUserEmail(userEmail); // ✅ New
-            payment.setAmount(paymentRequest.getAmount());
-            payment.setCurrency(paymentRequest.getCurrency());
-            payment.setPaymentProvider(provider);
             payment.setStatus(PaymentStatus.LINK_CREATED);
-
+            fillRequest(payment, paymentRequest, userEmail, provider);
+            // A concurrent insert for the same orderId fails here on uk_payments_order_id (409)
             paymentRepository.save(payment);
+            eventPublisher.publishEvent(PaymentStatusChangedEvent.of(orderId, userId, PaymentStatus.LINK_CREATED));
+        } else {
+            retry(payment, paymentRequest, userEmail, provider);
+        }
 
-            PaymentGateway gateway = paymentGatewayFactory.getPaymentGateway(paymentRequest);
-            PaymentResponseDto response = gateway.createPaymentLink(paymentRequest);
+        PaymentResponseDto response = gateway.createPaymentLink(paymentRequest);
 
-            payment.setExternalPaymentId(response.getPaymentId());
-            payment.setStatus(PaymentStatus.valueOf(response.getStatus().toUpperCase()));
-            payment.setUpdatedAt(LocalDateTime.now());
-            paymentRepository.save(payment);
+        PaymentStatus linkStatus = PaymentStatus.valueOf(response.getStatus().toUpperCase());
+        PaymentStateMachine.Result result = linkStatus == PaymentStatus.LINK_CREATED
+                ? paymentStateMachine.linkCreated(orderId, response.getPaymentId())
+                : paymentStateMachine.transition(orderId, linkStatus, response.getPaymentId());
+        if (result == PaymentStateMachine.Result.APPLIED) {
+            eventPublisher.publishEvent(PaymentStatusChangedEvent.of(orderId, userId, linkStatus));
+        }
 
-            PaymentAuditLog log = new PaymentAuditLog(
-                    payment.getOrderId(), userId, provider, payment.getAmount(),
-                    PaymentStatus.INITIATED.name(), LocalDateTime.now(), "Payment link created"
-            );
-            auditLogRepository.save(log);
+        PaymentAuditLog log = new PaymentAuditLog(
+                payment.getOrderId(), userId, provider, payment.getAmount(),
+                PaymentStatus.INITIATED.name(), LocalDateTime.now(), "Payment link created"
+        );
+        auditLogWriter.write(log, AuditLogWriter.Category.INFORMATIONAL);
 
-            return response;
-        } catch (Exception ex) {
-            logger.error("Failed to create payment link for orderId: {}. Error: {}", orderId, ex.getMessage(), ex);
-            throw ex;
-        } finally {
-            MDC.clear();
+        if (response.getOrderId() == null) {
+            response.setOrderId(orderId);
         }
+        return response;
+    }
+
+    /**
+     * Reuses the row of a failed or abandoned attempt. The request fields are saved against the
+     * row's version, and a FAILED row is moved back to LINK_CREATED through the state machine, so
+     * a webhook or expiry that lands in between is not overwritten.
+     */
+    private void retry(Payment payment, PaymentRequestDto paymentRequest, String userEmail, String provider) {
+        String orderId = payment.getOrderId();
+        PaymentStatus previous = payment.getStatus();
+        fillRequest(payment, paymentRequest, userEmail, provider);
+        try {
+            paymentRepository.save(payment);
+        } catch (ObjectOptimisticLockingFailureException ex) {
+            throw new IdempotencyConflictException("Payment for order " + orderId + " changed while retrying");
+        }
+        if (previous == PaymentStatus.FAILED) {
+            if (paymentStateMachine.transition(orderId, PaymentStatus.LINK_CREATED, null) != PaymentStateMachine.Result.APPLIED) {
+                throw new IdempotencyConflictException("Payment for order " + orderId + " changed while retrying");
+            }
+            eventPublisher.publishEvent(PaymentStatusChangedEvent.of(orderId, payment.getUserId(), PaymentStatus.LINK_CREATED));
+        }
+    }
+
+    private static void fillRequest(Payment payment, PaymentRequestDto paymentRequest, String userEmail, String provider) {
+        payment.setUserEmail(userEmail); // ✅ New
+        payment.setAmount(paymentRequest.getAmount());
+        payment.setCurrency(paymentRequest.getCurrency());
+        payment.setPaymentProvider(provider);
+        payment.setExternalPaymentId(null);
+        payment.setUpdatedAt(LocalDateTime.now());
     }
 }
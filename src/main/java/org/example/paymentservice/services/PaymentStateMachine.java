@@ -0,0 +1,123 @@
+package org.example.paymentservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.paymentservice.models.Payment;
+import org.example.paymentservice.models.PaymentStatus;
+import org.example.paymentservice.repositories.PaymentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single entry point for link-creation, webhook and rollback status changes. A change must be allowed by
+ * {@link PaymentStatus#canTransitionTo} and is applied with a compare-and-set UPDATE on the
+ * status it was checked against, so a racing webhook, expiry or rollback is rejected instead
+ * of overwritten. Callers in this JVM are serialized per orderId on a striped lock, which keeps
+ * them from burning conflicts on each other; across replicas the UPDATE alone decides.
+ */
+@Service
+public class PaymentStateMachine {
+
+    public enum Result {
+        APPLIED,
+        // Not allowed from the current status (duplicate or out-of-order event)
+        REJECTED,
+        // Status changed between read and write
+        CONFLICT,
+        NOT_FOUND
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentStateMachine.class);
+
+    private final PaymentRepository paymentRepository;
+    private final MeterRegistry meterRegistry;
+    private final ReentrantLock[] stripes;
+
+    public PaymentStateMachine(PaymentRepository paymentRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${payment.state-machine.lock-stripes:64}") int lockStripes) {
+        this.paymentRepository = paymentRepository;
+        this.meterRegistry = meterRegistry;
+        this.stripes = new ReentrantLock[Math.max(1, lockStripes)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Moves the payment for {@code orderId} to {@code to}; the caller's side effects (audit,
+     * events, emails) should only run on {@link Result#APPLIED}.
+     */
+    public Result transition(String orderId, PaymentStatus to, String externalPaymentId) {
+        ReentrantLock lock = stripeFor(orderId);
+        lock.lock();
+        try {
+            Payment payment = paymentRepository.findByOrderId(orderId);
+            if (payment == null) {
+                return Result.NOT_FOUND;
+            }
+            PaymentStatus from = payment.getStatus();
+            if (from == null || !from.canTransitionTo(to)) {
+                logger.warn("⛔ Rejected status change {} -> {} for orderId {}", from, to, orderId);
+                return record(from, to, Result.REJECTED);
+            }
+            int updated = paymentRepository.compareAndSetStatus(orderId, from, to, externalPaymentId, LocalDateTime.now());
+            if (updated == 0) {
+                logger.warn("⚠️ Status of orderId {} changed concurrently; {} -> {} not applied", orderId, from, to);
+                return record(from, to, Result.CONFLICT);
+            }
+            return record(from, to, Result.APPLIED);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores the gateway id of a link that was just created, provided the payment is still
+     * LINK_CREATED. A webhook or expiry that changed the status first wins ({@link Result#CONFLICT}).
+     */
+    public Result linkCreated(String orderId, String externalPaymentId) {
+        ReentrantLock lock = stripeFor(orderId);
+        lock.lock();
+        try {
+            int updated = paymentRepository.compareAndSetStatus(orderId, PaymentStatus.LINK_CREATED,
+                    PaymentStatus.LINK_CREATED, externalPaymentId, LocalDateTime.now());
+            if (updated == 0) {
+                logger.warn("⚠️ Status of orderId {} changed while its link was being created", orderId);
+                return record(PaymentStatus.LINK_CREATED, PaymentStatus.LINK_CREATED, Result.CONFLICT);
+            }
+            return record(PaymentStatus.LINK_CREATED, PaymentStatus.LINK_CREATED, Result.APPLIED);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts bulk changes made outside {@link #transition} (payment expiry).
+     */
+    public void recordBulk(PaymentStatus from, PaymentStatus to, int applied, int conflicts) {
+        counter(from, to, Result.APPLIED).increment(applied);
+        if (conflicts > 0) {
+            counter(from, to, Result.CONFLICT).increment(conflicts);
+        }
+    }
+
+    private Result record(PaymentStatus from, PaymentStatus to, Result result) {
+        counter(from, to, result).increment();
+        return result;
+    }
+
+    private Counter counter(PaymentStatus from, PaymentStatus to, Result result) {
+        return meterRegistry.counter("payment.status.transitions",
+                "from", String.valueOf(from), "to", to.name(), "result", result.name().toLowerCase());
+    }
+
+    private ReentrantLock stripeFor(String orderId) {
+        return stripes[Math.floorMod(orderId.hashCode(), stripes.length)];
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.paymentservice.services;
+
+import org.example.paymentservice.models.PaymentStatus;
+
+import java.util.List;
+
+/**
+ * Published whenever payments are created or change status. {@link PaymentCacheService}
+ * applies it after the surrounding transaction commits (or immediately when there is none).
+ */
+public record PaymentStatusChangedEvent(List<Change> changes) {
+
+    public record Change(String orderId, String userId, PaymentStatus status) {}
+
+    public static PaymentStatusChangedEvent of(String orderId, String userId, PaymentStatus status) {
+        return new PaymentStatusChangedEvent(List.of(new Change(orderId, userId, status)));
+    }
+}
@@ -1,9 +1,12 @@
 package org.example.paymentservice.services;
 import com.stripe.model.Event;
-import org.example.paymentservice.dtos.PaymentResponseDto;
+import org.example.paymentservice.dtos.PaymentPageDto;
+import org.example.paymentservice.models.PaymentStatus;
 import org.json.JSONObject;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
 
 public interface PaymentStatusService {
 
@@ -17,7 +20,24 @@ public interface PaymentStatusService {
      */
     void handleRazorpayEvent(JSONObject eventPayload);
 
-    List<PaymentResponseDto> getPaymentsByUserId(String userId);
+    /**
+     * Publishes a {@code payment.failed} event for a webhook whose status update threw. Called by
+     * the webhook and retry paths after the handler's transaction has rolled back.
+     */
+    void recordProcessingFailure(String provider, String orderId, Exception cause);
+
+    /**
+     * One keyset page of the user's payments, newest first. Filters may be null;
+     * {@code cursor} is the {@code nextCursor} of the previous page, or null for the first page.
+     */
+    PaymentPageDto getPaymentsByUserId(String userId, PaymentStatus status, LocalDateTime from,
+                                       LocalDateTime to, String cursor, int size);
+
+    /**
+     * Writes all of the user's matching payments to {@code out} as a JSON array, page by page.
+     */
+    void exportPaymentsByUserId(String userId, PaymentStatus status, LocalDateTime from,
+                                LocalDateTime to, OutputStream out) throws IOException;
 
 }
 
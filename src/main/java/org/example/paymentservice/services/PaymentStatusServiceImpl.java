@@ -1,62 +1,83 @@
 package org.example.paymentservice.services;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.stripe.model.Event;
 import com.stripe.model.StripeObject;
 import com.stripe.model.checkout.Session;
+import org.example.paymentservice.dtos.PaymentPageDto;
 import org.example.paymentservice.dtos.PaymentResponseDto;
-import org.example.paymentservice.kafka.PaymentEventPublisher;
+import org.example.paymentservice.kafka.PaymentEventOutbox;
 import org.example.paymentservice.kafka.PaymentEvent;
 import org.example.paymentservice.kafka.PaymentFailedEvent;
 import org.example.paymentservice.models.Payment;
 import org.example.paymentservice.models.PaymentAuditLog;
 import org.example.paymentservice.models.PaymentStatus;
-import org.example.paymentservice.repositories.PaymentAuditLogRepository;
 import org.example.paymentservice.repositories.PaymentRepository;
+import org.example.paymentservice.utils.PaymentCursor;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 public class PaymentStatusServiceImpl implements PaymentStatusService {
 
     private static final Logger logger = LoggerFactory.getLogger(PaymentStatusServiceImpl.class);
 
-    private static final String USER_PAYMENT_CACHE_PREFIX = "user:payments:";
+    @Value("${payment.history.default-page-size:20}")
+    private int defaultPageSize;
 
-    @Value("${cache.ttl.userPayments:60}") // TTL in seconds
-    private long userPaymentCacheTtl;
+    @Value("${payment.history.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${payment.history.export-batch-size:500}")
+    private int exportBatchSize;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PaymentCacheService paymentCacheService;
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private ApplicationEventPublisher eventPublisher;
 
     @Autowired
     private PaymentRepository paymentRepository;
 
     @Autowired
-    private PaymentEventPublisher paymentEventPublisher;
+    private PaymentEventOutbox paymentEventOutbox;
+
+    @Autowired
+    private PaymentStateMachine paymentStateMachine;
 
     @Autowired
-    private PaymentAuditLogRepository paymentAuditLogRepository;
+    private AuditLogWriter auditLogWriter;
 
     @Autowired
-    private SendGridEmailService emailService;
+    private NotificationOutboxService notificationOutboxService;
 
 
     @Override
+    @Transactional
     public void handleStripeCheckoutSessionCompleted(Event event) {
         logger.info("Received Stripe event: {}", event);
 
@@ -98,7 +119,7 @@ public class PaymentStatusServiceImpl implements PaymentStatusService {
                     "No matching payment found for orderId",
                     Instant.now()
             );
-            paymentEventPublisher.publishPaymentFailedEvent(failedEvent);
+            paymentEventOutbox.recordPaymentFailed(failedEvent);
         }
 
         // Set MDC context for logging
@@ -106,15 +127,19 @@ public class PaymentStatusServiceImpl implements PaymentStatusService {
         MDC.put("provider", "stripe");
         MDC.put("externalPaymentId", externalPaymentId);
         MDC.put("traceId", UUID.randomUUID().toString());
-        MDC.put("userId", payment.getUserId());
+        MDC.put("userId", payment != null ? payment.getUserId() : "unknown");
 
 
         try {
             if (payment != null) {
-                payment.setStatus(PaymentStatus.SUCCEEDED);
-
-                payment.setExternalPaymentId(externalPaymentId);
-                paymentRepository.save(payment);
+                // Duplicate or out-of-order deliveries stop here, before any side effects
+                PaymentStateMachine.Result result =
+                        paymentStateMachine.transition(orderId, PaymentStatus.SUCCEEDED, externalPaymentId);
+                if (result != PaymentStateMachine.Result.APPLIED) {
+                    logger.info("Stripe payment for orderId {} not applied: {}", orderId, result);
+                    return;
+                }
+                eventPublisher.publishEvent(PaymentStatusChangedEvent.of(orderId, payment.getUserId(), PaymentStatus.SUCCEEDED));
                 PaymentAuditLog auditLog = new PaymentAuditLog(
                         orderId,
                         payment.getUserId(),
@@ -124,26 +149,24 @@ public class PaymentStatusServiceImpl implements PaymentStatusService {
                         LocalDateTime.now(),
                         "Payment succeeded with externalPaymentId: " + externalPaymentId
                 );
-                paymentAuditLogRepository.save(auditLog);
+                auditLogWriter.write(auditLog, AuditLogWriter.Category.MONEY_MOVEMENT);
 
 
                 logger.info("Payment updated successfully for Stripe order.");
 
-                // Send confirmation email after payment success
-                try {
-                    emailService.sendEmail(
-                            payment.getUserEmail(), // ✅ Real user email stored in DB
-                            "✅ Payment Successful - Order #" + payment.getOrderId(),
-                            "Your payment of " + payment.getAmount() + " " + payment.getCurrency().toUpperCase() +
-                                    " via Stripe was successful for Order ID: " + payment.getOrderId() +
-                                    ".\n\nThank you for shopping with us!"
-                    );
-                } catch (IOException ex) {
-                    logger.error("❌ Failed to send payment success email for order {}: {}", orderId, ex.getMessage());
-                }
+                // Queue confirmation email; delivered by NotificationDispatcher
+                notificationOutboxService.enqueueEmail(
+                        "payment-success",
+                        orderId,
+                        payment.getUserEmail(), // ✅ Real user email stored in DB
+                        "✅ Payment Successful - Order #" + payment.getOrderId(),
+                        "Your payment of " + payment.getAmount() + " " + payment.getCurrency().toUpperCase() +
+                                " via Stripe was successful for Order ID: " + payment.getOrderId() +
+                                ".\n\nThank you for shopping with us!"
+                );
 
 
-                paymentEventPublisher.publishPaymentSuccess(new PaymentEvent(
+                paymentEventOutbox.recordPaymentSuccess(new PaymentEvent(
                         orderId,
                         "succeeded",
                         payment.getPaymentProvider(),
@@ -152,33 +175,26 @@ public class PaymentStatusServiceImpl implements PaymentStatusService {
             } else {
                 logger.warn("No Payment record found for orderId: {}", orderId);
                 // ⚠️ Fallback email if payment not found
-                try {
-                    emailService.sendEmail(
-                            orderId + "@fallbackmail.com", // ⛔ Replace with real fallback if available
-                            "❌ Payment Failed - Unknown Order",
-                            "We received a payment intent for Order ID: " + orderId + ", but no matching order was found. Please contact support if this was unexpected."
-                    );
-                } catch (IOException e) {
-                    logger.warn("Failed to send fallback email for unknown payment: {}", e.getMessage());
-                }
+                notificationOutboxService.enqueueEmail(
+                        "payment-unknown-order",
+                        orderId,
+                        orderId + "@fallbackmail.com", // ⛔ Replace with real fallback if available
+                        "❌ Payment Failed - Unknown Order",
+                        "We received a payment intent for Order ID: " + orderId + ", but no matching order was found. Please contact support if this was unexpected."
+                );
             }
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
+            // Rethrown so the transaction rolls back as a whole (a rollback-only transaction would
+            // otherwise fail at commit); the caller queues a retry and calls recordProcessingFailure
             logger.error("Error updating payment for orderId {}: {}", orderId, e.getMessage());
-
-            PaymentFailedEvent failedEvent = new PaymentFailedEvent(
-                    orderId,
-                    payment != null ? payment.getUserId() : "unknown",
-                    "stripe",
-                    "Exception during Stripe processing: " + e.getMessage(),
-                    Instant.now()
-            );
-            paymentEventPublisher.publishPaymentFailedEvent(failedEvent);
+            throw e;
         } finally {
             MDC.clear();
         }
     }
 
     @Override
+    @Transactional
     public void handleRazorpayEvent(JSONObject eventPayload) {
         logger.info("Received Razorpay webhook payload: {}", eventPayload);
 
@@ -217,7 +233,7 @@ public class PaymentStatusServiceImpl implements PaymentStatusService {
                     "No matching payment found for Razorpay orderId",
                     Instant.now()
             );
-            paymentEventPublisher.publishPaymentFailedEvent(failedEvent);
+            paymentEventOutbox.recordPaymentFailed(failedEvent);
         }
 
 
@@ -226,14 +242,18 @@ public class PaymentStatusServiceImpl implements PaymentStatusService {
         MDC.put("provider", "razorpay");
         MDC.put("externalPaymentId", externalPaymentId);
         MDC.put("traceId", UUID.randomUUID().toString());
-        MDC.put("userId", payment.getUserId());
+        MDC.put("userId", payment != null ? payment.getUserId() : "unknown");
 
         try {
             if (payment != null) {
-                payment.setStatus(PaymentStatus.SUCCEEDED);
-
-                payment.setExternalPaymentId(externalPaymentId);
-                paymentRepository.save(payment);
+                // Duplicate or out-of-order deliveries stop here, before any side effects
+                PaymentStateMachine.Result result =
+                        paymentStateMachine.transition(orderId, PaymentStatus.SUCCEEDED, externalPaymentId);
+                if (result != PaymentStateMachine.Result.APPLIED) {
+                    logger.info("Razorpay payment for orderId {} not applied: {}", orderId, result);
+                    return;
+                }
+                eventPublisher.publishEvent(PaymentStatusChangedEvent.of(orderId, payment.getUserId(), PaymentStatus.SUCCEEDED));
 
                 PaymentAuditLog auditLog = new PaymentAuditLog(
                         orderId,
@@ -244,28 +264,26 @@ public class PaymentStatusServiceImpl implements PaymentStatusService {
                         LocalDateTime.now(),
                         "Payment succeeded with externalPaymentId: " + externalPaymentId
                 );
-                paymentAuditLogRepository.save(auditLog);
+                auditLogWriter.write(auditLog, AuditLogWriter.Category.MONEY_MOVEMENT);
 
 
 
                 logger.info("Payment updated successfully for Razorpay order.");
 
-                // Send confirmation email after Razorpay success
-                try {
-                    emailService.sendEmail(
-                            payment.getUserEmail(), // ✅ Real user email stored in DB
-                            "✅ Payment Successful - Order #" + payment.getOrderId(),
-                            "Your payment of " + payment.getAmount() + " " + payment.getCurrency().toUpperCase() +
-                                    " via Razorpay was successful for Order ID: " + payment.getOrderId() +
-                                    ".\n\nThank you for shopping with us!"
-                    );
-                } catch (IOException ex) {
-                    logger.error("❌ Failed to send Razorpay payment success email for order {}: {}", orderId, ex.getMessage());
-                }
+                // Queue confirmation email; delivered by NotificationDispatcher
+                notificationOutboxService.enqueueEmail(
+                        "payment-success",
+                        orderId,
+                        payment.getUserEmail(), // ✅ Real user email stored in DB
+                        "✅ Payment Successful - Order #" + payment.getOrderId(),
+                        "Your payment of " + payment.getAmount() + " " + payment.getCurrency().toUpperCase() +
+                                " via Razorpay was successful for Order ID: " + payment.getOrderId() +
+                                ".\n\nThank you for shopping with us!"
+                );
 
 
 
-                paymentEventPublisher.publishPaymentSuccess(new PaymentEvent(
+                paymentEventOutbox.recordPaymentSuccess(new PaymentEvent(
                         orderId,
                         "succeeded",
                         payment.getPaymentProvider(),
@@ -274,17 +292,11 @@ public class PaymentStatusServiceImpl implements PaymentStatusService {
             } else {
                 logger.warn("No Payment record found for Razorpay orderId: {}", orderId);
             }
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
+            // Rethrown so the transaction rolls back as a whole (a rollback-only transaction would
+            // otherwise fail at commit); the caller queues a retry and calls recordProcessingFailure
             logger.error("Error updating Razorpay payment for orderId {}: {}", orderId, e.getMessage());
-
-            PaymentFailedEvent failedEvent = new PaymentFailedEvent(
-                    orderId,
-                    payment != null ? payment.getUserId() : "unknown",
-                    "razorpay",
-                    "Exception during Razorpay processing: " + e.getMessage(),
-                    Instant.now()
-            );
-            paymentEventPublisher.publishPaymentFailedEvent(failedEvent);
+            throw e;
         }
         finally {
             MDC.clear();
@@ -292,30 +304,95 @@ public class PaymentStatusServiceImpl implements PaymentStatusService {
     }
 
     @Override
-    public List<PaymentResponseDto> getPaymentsByUserId(String userId) {
-        String cacheKey = USER_PAYMENT_CACHE_PREFIX + userId;
+    public PaymentPageDto getPaymentsByUserId(String userId, PaymentStatus status, LocalDateTime from,
+                                              LocalDateTime to, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        // Only the unfiltered first page is cached; deeper pages are cheap index range reads
+        boolean cacheable = status == null && from == null && to == null && cursor == null
+                && pageSize == defaultPageSize;
+
+        if (cacheable) {
+            PaymentPageDto cached = paymentCacheService.getFirstPage(userId);
+            if (cached != null) {
+                logger.info("✅ Redis cache hit for user payments");
+                return cached;
+            }
+        }
 
-        List<PaymentResponseDto> cached = (List<PaymentResponseDto>) redisTemplate.opsForValue().get(cacheKey);
-        if (cached != null) {
-            logger.info("✅ Redis cache hit for user payments");
-            return cached;
+        PaymentCursor after = cursor != null ? PaymentCursor.decode(cursor) : null;
+        List<Payment> rows = paymentRepository.findPageByUserId(userId, status, from, to,
+                after != null ? after.createdAt() : null, after != null ? after.id() : null,
+                Limit.of(pageSize + 1));
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Payment> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Payment last = page.get(page.size() - 1);
+            nextCursor = new PaymentCursor(last.getCreatedAt(), last.getId()).encode();
         }
+        PaymentPageDto response = new PaymentPageDto(
+                page.stream().map(PaymentStatusServiceImpl::mapToResponseDto).collect(Collectors.toCollection(ArrayList::new)),
+                nextCursor, pageSize);
 
-        logger.info("🔍 Redis cache miss. Fetching payments from DB...");
-        List<Payment> payments = paymentRepository.findByUserId(userId);
-        List<PaymentResponseDto> response = payments.stream()
-                .map(this::mapToResponseDto)
-                .toList();
+        if (cacheable) {
+            paymentCacheService.putFirstPage(userId, response);
+            logger.info("📦 First payments page cached in Redis");
+        }
+        return response;
+    }
 
-        // Set cache with TTL
-        redisTemplate.opsForValue().set(cacheKey, response, userPaymentCacheTtl, TimeUnit.SECONDS);
-        logger.info("📦 Payments cached in Redis with TTL {}s", userPaymentCacheTtl);
+    @Override
+    public void recordProcessingFailure(String provider, String orderId, Exception cause) {
+        if (orderId == null) {
+            return;
+        }
+        try {
+            Payment payment = paymentRepository.findByOrderId(orderId);
+            PaymentFailedEvent failedEvent = new PaymentFailedEvent(
+                    orderId,
+                    payment != null ? payment.getUserId() : "unknown",
+                    provider,
+                    "Exception during " + provider + " processing: " + cause.getMessage(),
+                    Instant.now()
+            );
+            paymentEventOutbox.recordPaymentFailed(failedEvent);
+        } catch (RuntimeException ex) {
+            // The retry is already queued; losing this signal must not queue a second one
+            logger.error("Could not record payment.failed for orderId {}: {}", orderId, ex.getMessage());
+        }
+    }
 
-        return response;
+    @Override
+    public void exportPaymentsByUserId(String userId, PaymentStatus status, LocalDateTime from,
+                                       LocalDateTime to, OutputStream out) throws IOException {
+        int exported = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            LocalDateTime cursorCreatedAt = null;
+            Long cursorId = null;
+            while (true) {
+                List<PaymentRepository.ExportRow> batch = paymentRepository.findExportPageByUserId(userId, status,
+                        from, to, cursorCreatedAt, cursorId, Limit.of(exportBatchSize));
+                for (PaymentRepository.ExportRow row : batch) {
+                    generator.writeObject(mapToResponseDto(row));
+                }
+                exported += batch.size();
+                generator.flush();
+                if (batch.size() < exportBatchSize) {
+                    break;
+                }
+                PaymentRepository.ExportRow last = batch.get(batch.size() - 1);
+                cursorCreatedAt = last.getCreatedAt();
+                cursorId = last.getId();
+            }
+            generator.writeEndArray();
+        }
+        logger.info("📤 Exported {} payments for user {}", exported, userId);
     }
 
 
-    private PaymentResponseDto mapToResponseDto(Payment p) {
+    static PaymentResponseDto mapToResponseDto(Payment p) {
         PaymentResponseDto dto = new PaymentResponseDto();
         dto.setOrderId(p.getOrderId());
         dto.setPaymentId(p.getExternalPaymentId());
@@ -327,4 +404,16 @@ public class PaymentStatusServiceImpl implements PaymentStatusService {
         dto.setCreatedAt(p.getCreatedAt());
         return dto;
     }
+
+    static PaymentResponseDto mapToResponseDto(PaymentRepository.ExportRow row) {
+        PaymentResponseDto dto = new PaymentResponseDto();
+        dto.setOrderId(row.getOrderId());
+        dto.setPaymentId(row.getExternalPaymentId());
+        dto.setStatus(row.getStatus().name());
+        dto.setAmount(row.getAmount() != null ? BigDecimal.valueOf(row.getAmount()) : null);
+        dto.setCurrency(row.getCurrency());
+        dto.setProvider(row.getPaymentProvider());
+        dto.setCreatedAt(row.getCreatedAt());
+        return dto;
+    }
 }
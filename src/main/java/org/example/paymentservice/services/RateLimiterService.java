@@ -1,25 +1,120 @@
 package org.example.paymentservice.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
 import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.paymentservice.configs.RateLimitProperties;
+import org.example.paymentservice.configs.RateLimitProperties.Policy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
+/**
+ * Token buckets per (policy, key). In {@code local} mode buckets live in a bounded Caffeine
+ * cache and idle ones are evicted; in {@code redis} mode one Lua call per request refills and
+ * takes a token from a shared hash, so the limit holds across replicas. If Redis is
+ * unreachable the local bucket is used instead of failing the request.
+ */
 @Service
 public class RateLimiterService {
 
-    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiterService.class);
 
-    public Bucket resolveBucket(String key) {
-        return buckets.computeIfAbsent(key, this::createNewBucket);
+    public record Decision(boolean allowed, Duration retryAfter) {}
+
+    // ARGV: capacity, refill tokens, refill period (ms). Returns 0 when a token was taken,
+    // otherwise the milliseconds until one is available. Uses the server clock so replicas agree.
+    private static final RedisScript<Long> TAKE = new DefaultRedisScript<>("""
+            local capacity = tonumber(ARGV[1])
+            local refill = tonumber(ARGV[2])
+            local period = tonumber(ARGV[3])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(state[1]) or capacity
+            local ts = tonumber(state[2]) or now
+            if now > ts then
+              tokens = math.min(capacity, tokens + (now - ts) * refill / period)
+            end
+            local wait = 0
+            if tokens >= 1 then
+              tokens = tokens - 1
+            else
+              wait = math.ceil((1 - tokens) * period / refill)
+            end
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+            redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * period / refill) + 1000)
+            return wait
+            """, Long.class);
+
+    private final RateLimitProperties properties;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, Bucket> localBuckets;
+
+    public RateLimiterService(RateLimitProperties properties,
+                              StringRedisTemplate redisTemplate,
+                              MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.localBuckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxLocalBuckets())
+                .expireAfterAccess(properties.getIdleExpiry())
+                .build();
+        Gauge.builder("rate_limit.local.buckets", localBuckets, Cache::estimatedSize)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes one token for {@code key} under the named policy.
+     */
+    public Decision tryConsume(String policyName, String key) {
+        Policy policy = properties.policy(policyName);
+        String bucketKey = policyName + ":" + key;
+        Decision decision = properties.getMode() == RateLimitProperties.Mode.REDIS
+                ? consumeShared(policyName, bucketKey, policy)
+                : consumeLocal(bucketKey, policy);
+        meterRegistry.counter("rate_limit.decisions", "policy", policyName,
+                "result", decision.allowed() ? "allowed" : "limited").increment();
+        return decision;
+    }
+
+    private Decision consumeShared(String policyName, String bucketKey, Policy policy) {
+        try {
+            Long waitMs = redisTemplate.execute(TAKE, List.of("ratelimit:" + bucketKey),
+                    String.valueOf(policy.getCapacity()),
+                    String.valueOf(policy.getRefillTokens()),
+                    String.valueOf(policy.getRefillPeriod().toMillis()));
+            long wait = waitMs == null ? 0 : waitMs;
+            return new Decision(wait == 0, Duration.ofMillis(wait));
+        } catch (DataAccessException ex) {
+            meterRegistry.counter("rate_limit.redis.fallback", "policy", policyName).increment();
+            logger.warn("⚠️ Rate limit store unavailable, using local bucket: {}", ex.getMessage());
+            return consumeLocal(bucketKey, policy);
+        }
+    }
+
+    private Decision consumeLocal(String bucketKey, Policy policy) {
+        Bucket bucket = localBuckets.get(bucketKey, k -> newBucket(policy));
+        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+        return new Decision(probe.isConsumed(), Duration.ofNanos(probe.getNanosToWaitForRefill()));
     }
 
-    private Bucket createNewBucket(String key) {
-        Refill refill = Refill.greedy(10, Duration.ofSeconds(10)); // 10 requests every 10 seconds
-        Bandwidth limit = Bandwidth.classic(10, refill);
-        return Bucket.builder().addLimit(limit).build();
+    private static Bucket newBucket(Policy policy) {
+        Refill refill = Refill.greedy(policy.getRefillTokens(), policy.getRefillPeriod());
+        return Bucket.builder().addLimit(Bandwidth.classic(policy.getCapacity(), refill)).build();
     }
 }
@@ -4,6 +4,12 @@ import com.sendgrid.*;
 import com.sendgrid.helpers.mail.Mail;
 import com.sendgrid.helpers.mail.objects.Content;
 import com.sendgrid.helpers.mail.objects.Email;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -25,22 +31,55 @@ public class SendGridEmailService {
     @Value("${sendgrid.sender-name}")
     private String senderName;
 
+    @Value("${sendgrid.http.max-connections:20}")
+    private int maxConnections;
+
+    @Value("${sendgrid.http.timeout-ms:5000}")
+    private int timeoutMs;
+
+    private CloseableHttpClient httpClient;
+    private SendGrid sendGrid;
+
+    @PostConstruct
+    public void init() {
+        // One pooled client for the whole service instead of a new SendGrid (and connection) per email
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeoutMs)
+                .setConnectionRequestTimeout(timeoutMs)
+                .setSocketTimeout(timeoutMs)
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+        this.sendGrid = new SendGrid(sendgridApiKey, new Client(httpClient));
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
     public void sendEmail(String to, String subject, String content) throws IOException {
         Email from = new Email(senderEmail, senderName);
         Email toEmail = new Email(to);
         Content emailContent = new Content("text/plain", content);
         Mail mail = new Mail(from, subject, toEmail, emailContent);
 
-        SendGrid sg = new SendGrid(sendgridApiKey);
         Request request = new Request();
         try {
             request.setMethod(Method.POST);
             request.setEndpoint("mail/send");
             request.setBody(mail.build());
-            Response response = sg.api(request);
+            Response response = sendGrid.api(request);
 
             if (response.getStatusCode() >= 400) {
-                throw new RuntimeException("Failed to send email: " + response.getBody());
+                throw new IOException("Failed to send email: " + response.getStatusCode() + " " + response.getBody());
             }
             logger.info("📧 Payment email sent to {} | Status: {}", to, response.getStatusCode());
 
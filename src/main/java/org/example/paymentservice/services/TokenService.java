@@ -1,47 +1,239 @@
 package org.example.paymentservice.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.example.paymentservice.clients.AuthClient;
 import org.example.paymentservice.dtos.TokenIntrospectionResponseDTO;
+import org.example.paymentservice.utils.TokenClaimUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Token introspection with three cache tiers: the current request, a bounded in-process
+ * cache and Redis. Concurrent misses for the same token are coalesced into a single
+ * auth-service call. Entries never outlive the token's {@code exp}.
+ * <p>
+ * With {@code security.token.local-claims.enabled} the claims of the JWT already validated
+ * by the resource server are used directly and remote introspection is only a fallback
+ * (e.g. for opaque tokens), controlled by {@code security.token.introspection-fallback.enabled}.
+ */
 @Service
 public class TokenService {
 
     private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
 
     private static final String CACHE_PREFIX = "token:introspect:";
-    private static final long TTL_SECONDS = 300; // 5 minutes
+    private static final String REQUEST_ATTRIBUTE_PREFIX = TokenService.class.getName() + ".";
 
-    @Autowired
-    private AuthClient authClient;
+    private final AuthClient authClient;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Cache<String, TokenIntrospectionResponseDTO> localCache;
+    private final ConcurrentHashMap<String, CompletableFuture<TokenIntrospectionResponseDTO>> inFlight = new ConcurrentHashMap<>();
+    private final long ttlSeconds;
 
-    @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private final Counter requestHits;
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+    private final Counter coalescedLoads;
+    private final Counter localJwtResolutions;
+
+    @Value("${security.token.local-claims.enabled:false}")
+    private boolean localClaimsEnabled;
+
+    @Value("${security.token.introspection-fallback.enabled:true}")
+    private boolean introspectionFallbackEnabled;
+
+    public TokenService(AuthClient authClient,
+                        RedisTemplate<String, Object> redisTemplate,
+                        MeterRegistry meterRegistry,
+                        @Value("${cache.ttl.token-introspect:300}") long ttlSeconds,
+                        @Value("${cache.local.token-introspect.ttl:60}") long localTtlSeconds,
+                        @Value("${cache.local.token-introspect.max-size:10000}") long localMaxSize) {
+        this.authClient = authClient;
+        this.redisTemplate = redisTemplate;
+        this.ttlSeconds = ttlSeconds;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfter(new TokenExpiry(localTtlSeconds))
+                .build();
+
+        this.requestHits = tierCounter(meterRegistry, "request", "hit");
+        this.localHits = tierCounter(meterRegistry, "local", "hit");
+        this.localMisses = tierCounter(meterRegistry, "local", "miss");
+        this.redisHits = tierCounter(meterRegistry, "redis", "hit");
+        this.redisMisses = tierCounter(meterRegistry, "redis", "miss");
+        this.coalescedLoads = meterRegistry.counter("token.introspection.coalesced");
+        this.localJwtResolutions = meterRegistry.counter("token.introspection.local.jwt");
+    }
 
     public TokenIntrospectionResponseDTO introspect(String tokenHeader) {
         String token = tokenHeader.replace("Bearer ", "").trim();
-        String cacheKey = CACHE_PREFIX + token;
 
-        // 1. Check Redis cache
+        // 0. Claims of the JWT validated by the resource server filter, no network hop
+        if (localClaimsEnabled) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication instanceof JwtAuthenticationToken jwtAuth
+                    && token.equals(jwtAuth.getToken().getTokenValue())) {
+                localJwtResolutions.increment();
+                return TokenClaimUtils.fromJwt(jwtAuth.getToken());
+            }
+            if (!introspectionFallbackEnabled) {
+                throw new SecurityException("Access denied: token could not be validated locally");
+            }
+        }
+
+        String tokenHash = sha256(token);
+
+        // 1. Already resolved during this request (RBAC aspect + controller + service)
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        String requestKey = REQUEST_ATTRIBUTE_PREFIX + tokenHash;
+        if (request != null
+                && request.getAttribute(requestKey, RequestAttributes.SCOPE_REQUEST) instanceof TokenIntrospectionResponseDTO dto) {
+            requestHits.increment();
+            return dto;
+        }
+
+        // 2. In-process cache
+        TokenIntrospectionResponseDTO response = localCache.getIfPresent(tokenHash);
+        if (response != null) {
+            localHits.increment();
+        } else {
+            localMisses.increment();
+            response = loadCoalesced(tokenHash, tokenHeader);
+        }
+
+        if (request != null && response != null) {
+            request.setAttribute(requestKey, response, RequestAttributes.SCOPE_REQUEST);
+        }
+        return response;
+    }
+
+    /**
+     * Single-flight load: the first caller for a token goes to Redis / auth-service, concurrent
+     * callers for the same token wait for that result instead of issuing their own call.
+     */
+    private TokenIntrospectionResponseDTO loadCoalesced(String tokenHash, String tokenHeader) {
+        CompletableFuture<TokenIntrospectionResponseDTO> mine = new CompletableFuture<>();
+        CompletableFuture<TokenIntrospectionResponseDTO> existing = inFlight.putIfAbsent(tokenHash, mine);
+        if (existing != null) {
+            coalescedLoads.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw ex;
+            }
+        }
+
+        try {
+            TokenIntrospectionResponseDTO response = load(tokenHash, tokenHeader);
+            if (response != null) {
+                localCache.put(tokenHash, response);
+            }
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(tokenHash, mine);
+        }
+    }
+
+    private TokenIntrospectionResponseDTO load(String tokenHash, String tokenHeader) {
+        String cacheKey = CACHE_PREFIX + tokenHash;
+
+        // 3. Check Redis cache
         Object cached = redisTemplate.opsForValue().get(cacheKey);
         if (cached instanceof TokenIntrospectionResponseDTO dto) {
-            logger.info("✅ Local cache hit for token introspection");
+            redisHits.increment();
+            logger.debug("✅ Redis cache hit for token introspection");
             return dto;
         }
+        redisMisses.increment();
 
-        // 2. Fetch from auth-service
+        // 4. Fetch from auth-service
         TokenIntrospectionResponseDTO response = authClient.introspectToken(tokenHeader);
 
-        // 3. Store in Redis
-        redisTemplate.opsForValue().set(cacheKey, response, TTL_SECONDS, TimeUnit.SECONDS);
-        logger.info("📦 Stored introspection result in Redis for 5 minutes");
-
+        // 5. Store in Redis, never past the token's own expiry
+        long ttl = remainingSeconds(response, ttlSeconds);
+        if (ttl > 0) {
+            redisTemplate.opsForValue().set(cacheKey, response, ttl, TimeUnit.SECONDS);
+            logger.info("📦 Stored introspection result in Redis for {}s", ttl);
+        }
         return response;
     }
+
+    static long remainingSeconds(TokenIntrospectionResponseDTO dto, long maxSeconds) {
+        if (dto == null || dto.getExp() == null) {
+            return maxSeconds;
+        }
+        long untilExp = dto.getExp() - Instant.now().getEpochSecond();
+        return Math.max(0, Math.min(maxSeconds, untilExp));
+    }
+
+    private static String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static Counter tierCounter(MeterRegistry registry, String tier, String result) {
+        return Counter.builder("token.introspection.cache")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static final class TokenExpiry implements Expiry<String, TokenIntrospectionResponseDTO> {
+        private final long maxSeconds;
+
+        private TokenExpiry(long maxSeconds) {
+            this.maxSeconds = maxSeconds;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, TokenIntrospectionResponseDTO value, long currentTime) {
+            return Duration.ofSeconds(remainingSeconds(value, maxSeconds)).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, TokenIntrospectionResponseDTO value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, TokenIntrospectionResponseDTO value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
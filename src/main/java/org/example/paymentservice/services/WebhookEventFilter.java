@@ -0,0 +1,190 @@
+package org.example.paymentservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.paymentservice.repositories.WebhookEventRepository;
+import org.example.paymentservice.repositories.WebhookEventRepository.EventKey;
+import org.example.paymentservice.utils.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory Bloom filter over {@code webhook_events.event_id} so that the database is only
+ * asked about events that may already have been processed. Loaded once at startup by walking
+ * the table in primary-key order, then kept current by local inserts and by a periodic
+ * catch-up of rows processed since the newest {@code processed_at} seen minus
+ * {@code webhook.event-filter.catch-up-overlap-ms}. The overlap re-reads rows whose transaction
+ * committed after a newer row was already loaded (an id cursor would skip them for good), so
+ * the filter never has false negatives for committed rows. Rows from other replicas show up
+ * after at most one refresh; until then their Redis DONE markers cover them. Until the initial
+ * load finishes every lookup is reported as a possible match.
+ */
+@Service
+public class WebhookEventFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookEventFilter.class);
+
+    private final WebhookEventRepository webhookEventRepository;
+    private final BloomFilter filter;
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private final Counter skippedLookups;
+    private final Counter falsePositives;
+    private final Counter confirmedDuplicates;
+
+    @Value("${webhook.event-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${webhook.event-filter.load-batch-size:10000}")
+    private int loadBatchSize;
+
+    @Value("${webhook.event-filter.catch-up-overlap-ms:60000}")
+    private long catchUpOverlapMs;
+
+    private volatile boolean ready;
+    // Newest processed_at loaded so far; catch-up restarts from here minus the overlap
+    private LocalDateTime watermark;
+
+    public WebhookEventFilter(WebhookEventRepository webhookEventRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${webhook.event-filter.expected-insertions:2000000}") long expectedInsertions,
+                              @Value("${webhook.event-filter.fpp:0.001}") double fpp) {
+        this.webhookEventRepository = webhookEventRepository;
+        this.filter = new BloomFilter(expectedInsertions, fpp);
+        this.skippedLookups = meterRegistry.counter("webhook.event_filter.lookups", "result", "definite_negative");
+        this.falsePositives = meterRegistry.counter("webhook.event_filter.lookups", "result", "false_positive");
+        this.confirmedDuplicates = meterRegistry.counter("webhook.event_filter.lookups", "result", "duplicate");
+        Gauge.builder("webhook.event_filter.fpp.estimated", filter, BloomFilter::expectedFalsePositiveProbability)
+                .register(meterRegistry);
+        Gauge.builder("webhook.event_filter.memory.bytes", filter, BloomFilter::memoryBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        // Off the main thread: a large table should not hold up readiness
+        Thread.ofPlatform().name("webhook-event-filter-load").daemon().start(() -> {
+            try {
+                long loaded = loadAll();
+                ready = true;
+                logger.info("✅ Webhook event filter loaded {} ids ({} bytes)", loaded, filter.memoryBytes());
+            } catch (DataAccessException ex) {
+                logger.error("❌ Webhook event filter load failed, database checks stay on: {}", ex.getMessage());
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${webhook.event-filter.refresh-interval-ms:5000}")
+    public void refresh() {
+        if (!ready) {
+            return;
+        }
+        try {
+            catchUp();
+        } catch (DataAccessException ex) {
+            logger.warn("⚠️ Webhook event filter refresh failed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Whether the event has to be checked against {@code webhook_events}. False means the id
+     * was definitely never stored.
+     */
+    public boolean mightExist(String eventId) {
+        if (!enabled || !ready) {
+            return true;
+        }
+        if (filter.mightContain(eventId)) {
+            return true;
+        }
+        skippedLookups.increment();
+        return false;
+    }
+
+    /**
+     * Records the outcome of a database check that followed a positive {@link #mightExist}.
+     */
+    public void recordLookup(boolean existed) {
+        if (!enabled || !ready) {
+            return;
+        }
+        (existed ? confirmedDuplicates : falsePositives).increment();
+    }
+
+    public void add(String eventId) {
+        filter.put(eventId);
+    }
+
+    private long loadAll() {
+        loadLock.lock();
+        try {
+            // Rows committing while the walk runs are caught by the first refresh's overlap
+            LocalDateTime started = LocalDateTime.now();
+            long loaded = 0;
+            long lastId = 0;
+            while (true) {
+                List<EventKey> keys = webhookEventRepository.findKeysAfter(lastId, Limit.of(loadBatchSize));
+                for (EventKey key : keys) {
+                    filter.put(key.getEventId());
+                }
+                loaded += keys.size();
+                if (keys.size() < loadBatchSize) {
+                    break;
+                }
+                lastId = keys.get(keys.size() - 1).getId();
+            }
+            watermark = started;
+            return loaded;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private long catchUp() {
+        loadLock.lock();
+        try {
+            LocalDateTime cursorTime = watermark.minus(Duration.ofMillis(catchUpOverlapMs));
+            long cursorId = 0;
+            LocalDateTime newest = watermark;
+            long loaded = 0;
+            while (true) {
+                List<EventKey> keys = webhookEventRepository.findKeysProcessedAfter(cursorTime, cursorId,
+                        Limit.of(loadBatchSize));
+                for (EventKey key : keys) {
+                    filter.put(key.getEventId());
+                }
+                loaded += keys.size();
+                if (!keys.isEmpty()) {
+                    EventKey last = keys.get(keys.size() - 1);
+                    cursorTime = last.getProcessedAt();
+                    cursorId = last.getId();
+                    if (cursorTime.isAfter(newest)) {
+                        newest = cursorTime;
+                    }
+                }
+                if (keys.size() < loadBatchSize) {
+                    watermark = newest;
+                    return loaded;
+                }
+            }
+        } finally {
+            loadLock.unlock();
+        }
+    }
+}
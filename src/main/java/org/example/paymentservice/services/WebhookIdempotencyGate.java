@@ -0,0 +1,176 @@
+package org.example.paymentservice.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.paymentservice.repositories.WebhookEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Single Redis round trip per webhook state change. The key {@code webhook:{provider}:{eventId}}
+ * moves RECEIVED -> PROCESSING -> DONE | FAILED: RECEIVED and PROCESSING are short leases,
+ * DONE is the long-lived processed marker, and FAILED releases the event so a redelivery or
+ * the retry job can take it. {@code webhook_events} is consulted only when Redis has no
+ * state for the event (expired or never seen), and only when {@link WebhookEventFilter} cannot
+ * rule the id out; if Redis is unavailable an unfiltered database check decides.
+ */
+@Service
+public class WebhookIdempotencyGate {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookIdempotencyGate.class);
+
+    public enum Admission {
+        ACQUIRED,
+        DUPLICATE,
+        IN_FLIGHT
+    }
+
+    // Returns the previous state ('' when absent) after taking the PROCESSING lease, or
+    // 'DONE' / 'BUSY' without changing anything.
+    private static final RedisScript<String> ENTER = new DefaultRedisScript<>("""
+            local state = redis.call('GET', KEYS[1])
+            if state == 'DONE' then return 'DONE' end
+            if state == 'PROCESSING' then return 'BUSY' end
+            redis.call('SET', KEYS[1], 'PROCESSING', 'PX', ARGV[1])
+            return state or ''
+            """, String.class);
+
+    // Like ENTER, a FAILED event is released and may be taken again
+    private static final RedisScript<Long> RECEIVE = new DefaultRedisScript<>("""
+            local state = redis.call('GET', KEYS[1])
+            if state and state ~= 'FAILED' then return 0 end
+            redis.call('SET', KEYS[1], 'RECEIVED', 'PX', ARGV[1])
+            return 1
+            """, Long.class);
+
+    // Only the PROCESSING holder may release; never downgrade DONE
+    private static final RedisScript<Long> FAIL = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == 'PROCESSING' then
+              redis.call('SET', KEYS[1], 'FAILED', 'PX', ARGV[1])
+              return 1
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final WebhookEventRepository webhookEventRepository;
+    private final WebhookEventFilter webhookEventFilter;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${webhook.idempotency.lease-ms:300000}")
+    private long leaseMs;
+
+    @Value("${webhook.idempotency.done-ttl-ms:604800000}")
+    private long doneTtlMs;
+
+    @Value("${webhook.idempotency.failed-ttl-ms:3600000}")
+    private long failedTtlMs;
+
+    public WebhookIdempotencyGate(StringRedisTemplate redisTemplate,
+                                  WebhookEventRepository webhookEventRepository,
+                                  WebhookEventFilter webhookEventFilter,
+                                  MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.webhookEventRepository = webhookEventRepository;
+        this.webhookEventFilter = webhookEventFilter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Marks a webhook accepted for async processing.
+     *
+     * @return false if Redis already holds a state other than FAILED for the event
+     */
+    public boolean receive(String provider, String eventId) {
+        try {
+            Long created = redisTemplate.execute(RECEIVE, List.of(key(provider, eventId)), String.valueOf(leaseMs));
+            boolean accepted = created != null && created == 1L;
+            record(accepted ? "received" : "duplicate_redis");
+            return accepted;
+        } catch (DataAccessException ex) {
+            // Inbox unique constraint still rejects duplicates
+            record("redis_unavailable");
+            logger.warn("⚠️ Idempotency gate unavailable, deferring to inbox: {}", ex.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Takes the processing lease for an event unless it is already done or being processed.
+     */
+    public Admission enter(String provider, String eventId) {
+        String previous;
+        try {
+            previous = redisTemplate.execute(ENTER, List.of(key(provider, eventId)), String.valueOf(leaseMs));
+        } catch (DataAccessException ex) {
+            record("redis_unavailable");
+            logger.warn("⚠️ Idempotency gate unavailable, using database check only: {}", ex.getMessage());
+            // Authoritative check: without Redis markers the filter's refresh lag would let duplicates through
+            return webhookEventRepository.existsByEventId(eventId) ? Admission.DUPLICATE : Admission.ACQUIRED;
+        }
+
+        if ("DONE".equals(previous)) {
+            record("duplicate_redis");
+            return Admission.DUPLICATE;
+        }
+        if ("BUSY".equals(previous)) {
+            record("in_flight");
+            return Admission.IN_FLIGHT;
+        }
+        if (previous == null || previous.isEmpty()) {
+            // Unknown to Redis: the marker may have expired, so ask the database
+            if (processedBefore(eventId)) {
+                record("duplicate_db");
+                complete(provider, eventId);
+                return Admission.DUPLICATE;
+            }
+        }
+        record("acquired");
+        return Admission.ACQUIRED;
+    }
+
+    /**
+     * Marks the event processed; callers have already stored it in {@code webhook_events}.
+     */
+    public void complete(String provider, String eventId) {
+        webhookEventFilter.add(eventId);
+        try {
+            redisTemplate.opsForValue().set(key(provider, eventId), "DONE", Duration.ofMillis(doneTtlMs));
+        } catch (DataAccessException ex) {
+            logger.warn("⚠️ Could not mark webhook {} done in Redis: {}", eventId, ex.getMessage());
+        }
+    }
+
+    public void fail(String provider, String eventId) {
+        try {
+            redisTemplate.execute(FAIL, List.of(key(provider, eventId)), String.valueOf(failedTtlMs));
+        } catch (DataAccessException ex) {
+            logger.warn("⚠️ Could not release webhook {} in Redis: {}", eventId, ex.getMessage());
+        }
+    }
+
+    private boolean processedBefore(String eventId) {
+        if (!webhookEventFilter.mightExist(eventId)) {
+            return false;
+        }
+        boolean exists = webhookEventRepository.existsByEventId(eventId);
+        webhookEventFilter.recordLookup(exists);
+        return exists;
+    }
+
+    private static String key(String provider, String eventId) {
+        return "webhook:" + provider + ":" + eventId;
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("webhook.idempotency", "result", result).increment();
+    }
+}
@@ -0,0 +1,219 @@
+package org.example.paymentservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.example.paymentservice.configs.WorkerThreads;
+import org.example.paymentservice.models.InboundWebhook;
+import org.example.paymentservice.models.InboundWebhookStatus;
+import org.example.paymentservice.models.WebhookRetryTask;
+import org.example.paymentservice.repositories.InboundWebhookRepository;
+import org.example.paymentservice.repositories.WebhookRetryTaskRepository;
+import org.example.paymentservice.utils.StripedExecutor;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Durable, asynchronous webhook ingestion. The controller verifies the signature and calls
+ * {@link #ingest}; the event is persisted to {@code inbound_webhooks} and handed to a bounded
+ * pool of per-orderId lanes. Rows that could not be queued (pool full, crash, restart) are
+ * picked up again by {@link #sweep()}.
+ */
+@Service
+public class WebhookIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookIngestionService.class);
+
+    private final InboundWebhookRepository inboundWebhookRepository;
+    private final WebhookRetryTaskRepository webhookRetryTaskRepository;
+    private final WebhookProcessingService webhookProcessingService;
+    private final StripedExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final Timer lagTimer;
+    private final Counter deferredCounter;
+
+    @Value("${webhook.ingest.redispatch-after-ms:30000}")
+    private long redispatchAfterMs;
+
+    @Value("${webhook.ingest.processing-lease-ms:300000}")
+    private long processingLeaseMs;
+
+    public WebhookIngestionService(InboundWebhookRepository inboundWebhookRepository,
+                                   WebhookRetryTaskRepository webhookRetryTaskRepository,
+                                   WebhookProcessingService webhookProcessingService,
+                                   MeterRegistry meterRegistry,
+                                   WorkerThreads workerThreads,
+                                   @Value("${webhook.ingest.workers:8}") int workers,
+                                   @Value("${webhook.ingest.queue-capacity:2000}") int queueCapacity) {
+        this.inboundWebhookRepository = inboundWebhookRepository;
+        this.webhookRetryTaskRepository = webhookRetryTaskRepository;
+        this.webhookProcessingService = webhookProcessingService;
+        this.meterRegistry = meterRegistry;
+        this.executor = new StripedExecutor(workers, Math.max(1, queueCapacity / workers),
+                workerThreads.factory("webhook-worker-"));
+
+        Gauge.builder("webhook.ingest.queue.depth", executor, StripedExecutor::queueDepth)
+                .description("Webhooks queued in memory waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("webhook.ingest.workers.active", executor, StripedExecutor::activeCount)
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("webhook.ingest.lag")
+                .description("Time between webhook acceptance and the start of processing")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.deferredCounter = Counter.builder("webhook.ingest.deferred")
+                .description("Webhooks left for the sweeper because the worker queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Persists a verified webhook and schedules it for processing.
+     *
+     * @return false if the same provider event was already accepted.
+     */
+    public boolean ingest(String provider, String eventId, String orderId, String payload, String signature) {
+        InboundWebhook webhook = persist(provider, eventId, orderId, payload, signature);
+        if (webhook == null) {
+            return false;
+        }
+        meterRegistry.counter("webhook.ingest.accepted", "provider", provider).increment();
+        dispatch(webhook);
+        return true;
+    }
+
+    /**
+     * Persists a verified webhook without dispatching it; {@link #sweep()} processes it once
+     * {@code webhook.ingest.redispatch-after-ms} has passed. Used to shed load when the
+     * provider's rate limit is exhausted.
+     *
+     * @return false if the same provider event was already accepted.
+     */
+    public boolean defer(String provider, String eventId, String orderId, String payload, String signature) {
+        if (persist(provider, eventId, orderId, payload, signature) == null) {
+            return false;
+        }
+        meterRegistry.counter("webhook.ingest.shed", "provider", provider).increment();
+        return true;
+    }
+
+    private InboundWebhook persist(String provider, String eventId, String orderId, String payload, String signature) {
+        try {
+            return inboundWebhookRepository.save(
+                    InboundWebhook.received(provider, eventId, orderId, payload, signature));
+        } catch (DataIntegrityViolationException ex) {
+            logger.warn("Duplicate {} webhook ignored at ingestion. eventId={}", provider, eventId);
+            return null;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${webhook.ingest.sweep-interval-ms:5000}")
+    public void sweep() {
+        LocalDateTime now = LocalDateTime.now();
+
+        // Rows whose worker died mid-flight go back to the queue once the lease runs out
+        List<InboundWebhook> stuck = inboundWebhookRepository.findTop100ByStatusAndUpdatedAtBeforeOrderByIdAsc(
+                InboundWebhookStatus.PROCESSING, now.minus(Duration.ofMillis(processingLeaseMs)));
+        for (InboundWebhook webhook : stuck) {
+            inboundWebhookRepository.transition(webhook.getId(), InboundWebhookStatus.PROCESSING,
+                    InboundWebhookStatus.RECEIVED, now);
+        }
+
+        List<InboundWebhook> pending = inboundWebhookRepository.findTop100ByStatusAndUpdatedAtBeforeOrderByIdAsc(
+                InboundWebhookStatus.RECEIVED, now.minus(Duration.ofMillis(redispatchAfterMs)));
+        if (!pending.isEmpty()) {
+            logger.info("🔁 Re-dispatching {} pending inbound webhooks", pending.size());
+        }
+        for (InboundWebhook webhook : pending) {
+            if (!dispatch(webhook)) {
+                break; // queue is full again, wait for the next sweep
+            }
+        }
+    }
+
+    private boolean dispatch(InboundWebhook webhook) {
+        Long id = webhook.getId();
+        LocalDateTime receivedAt = webhook.getReceivedAt();
+        try {
+            executor.execute(webhook.orderingKey(), () -> process(id, receivedAt));
+            return true;
+        } catch (RejectedExecutionException ex) {
+            deferredCounter.increment();
+            logger.warn("Webhook worker queue full, eventId={} left for the sweeper", webhook.getEventId());
+            return false;
+        }
+    }
+
+    private void process(Long id, LocalDateTime receivedAt) {
+        LocalDateTime now = LocalDateTime.now();
+        if (inboundWebhookRepository.transition(id, InboundWebhookStatus.RECEIVED, InboundWebhookStatus.PROCESSING, now) == 0) {
+            return; // already claimed by another worker or replica
+        }
+        lagTimer.record(Duration.between(receivedAt, now));
+
+        InboundWebhook webhook = null;
+        InboundWebhookStatus result;
+        try {
+            webhook = inboundWebhookRepository.findById(id).orElse(null);
+            if (webhook == null) {
+                return;
+            }
+            WebhookProcessingService.Outcome outcome = switch (webhook.getProvider()) {
+                case "stripe" -> webhookProcessingService.processStripe(
+                        WebhookProcessingService.parseStripeEvent(webhook.getPayload()),
+                        webhook.getPayload(), webhook.getSignature());
+                case "razorpay" -> webhookProcessingService.processRazorpay(
+                        new JSONObject(webhook.getPayload()), webhook.getPayload(), webhook.getSignature());
+                default -> throw new IllegalStateException("Unknown webhook provider: " + webhook.getProvider());
+            };
+            meterRegistry.counter("webhook.ingest.processed", "provider", webhook.getProvider(),
+                    "outcome", outcome.name().toLowerCase()).increment();
+            result = switch (outcome) {
+                case RETRY_QUEUED -> InboundWebhookStatus.FAILED;
+                // Lease held elsewhere (possibly by a crashed worker): back to RECEIVED so the sweeper
+                // re-dispatches it after redispatch-after-ms until the holder finishes or its lease expires
+                case IN_FLIGHT -> InboundWebhookStatus.RECEIVED;
+                case PROCESSED, DUPLICATE -> InboundWebhookStatus.DONE;
+            };
+        } catch (Exception ex) {
+            logger.error("Inbound webhook {} could not be processed: {}", id, ex.getMessage());
+            if (webhook == null) {
+                return; // row stays PROCESSING and is swept once its lease runs out
+            }
+            // Already acknowledged to the provider: hand it to the retry job (backoff, dead-lettering).
+            // If this save fails too the row stays PROCESSING and the sweeper picks it up again.
+            WebhookRetryTask retryTask = switch (webhook.getProvider()) {
+                case "stripe" -> WebhookRetryTask.buildStripeRetry(webhook.getPayload(), webhook.getSignature());
+                case "razorpay" -> WebhookRetryTask.buildRazorpayRetry(webhook.getPayload(), webhook.getSignature());
+                default -> null;
+            };
+            if (retryTask != null) {
+                webhookRetryTaskRepository.save(retryTask);
+            }
+            webhook.setLastError(ex.getMessage());
+            result = InboundWebhookStatus.FAILED;
+        }
+
+        webhook.setStatus(result);
+        webhook.setAttemptCount(webhook.getAttemptCount() + 1);
+        webhook.setUpdatedAt(LocalDateTime.now());
+        inboundWebhookRepository.save(webhook);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Anything still queued stays RECEIVED in the table and is swept after restart
+        executor.shutdown(Duration.ofSeconds(10));
+    }
+}
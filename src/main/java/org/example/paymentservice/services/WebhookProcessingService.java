@@ -0,0 +1,117 @@
+package org.example.paymentservice.services;
+
+import com.stripe.model.Event;
+import com.stripe.model.StripeObject;
+import com.stripe.model.checkout.Session;
+import com.stripe.net.ApiResource;
+import org.example.paymentservice.models.WebhookEvent;
+import org.example.paymentservice.models.WebhookRetryTask;
+import org.example.paymentservice.repositories.WebhookEventRepository;
+import org.example.paymentservice.repositories.WebhookRetryTaskRepository;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Applies an already verified webhook: idempotency gate, status update, processed marker,
+ * and a retry task when the update fails. Shared by the synchronous controller path and
+ * the asynchronous ingestion workers.
+ */
+@Service
+public class WebhookProcessingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookProcessingService.class);
+
+    public enum Outcome {
+        PROCESSED,
+        DUPLICATE,
+        // Another worker holds the processing lease; try again later rather than treating it as done
+        IN_FLIGHT,
+        RETRY_QUEUED
+    }
+
+    @Autowired private WebhookEventRepository webhookEventRepository;
+    @Autowired private WebhookRetryTaskRepository webhookRetryTaskRepository;
+    @Autowired private PaymentStatusService paymentStatusService;
+    @Autowired private WebhookIdempotencyGate idempotencyGate;
+
+    public Outcome processStripe(Event event, String payload, String sigHeader) {
+        return process("stripe", event.getId(), stripeOrderId(event), () -> {
+            if ("checkout.session.completed".equals(event.getType())) {
+                paymentStatusService.handleStripeCheckoutSessionCompleted(event);
+            }
+        }, () -> WebhookRetryTask.buildStripeRetry(payload, sigHeader));
+    }
+
+    public Outcome processRazorpay(JSONObject jsonPayload, String payload, String sigHeader) {
+        return process("razorpay", jsonPayload.optString("id"), razorpayOrderId(jsonPayload),
+                () -> paymentStatusService.handleRazorpayEvent(jsonPayload),
+                () -> WebhookRetryTask.buildRazorpayRetry(payload, sigHeader));
+    }
+
+    private Outcome process(String provider, String eventId, String orderId, Runnable handler,
+                            Supplier<WebhookRetryTask> retryTask) {
+        WebhookIdempotencyGate.Admission admission = idempotencyGate.enter(provider, eventId);
+        if (admission == WebhookIdempotencyGate.Admission.IN_FLIGHT) {
+            logger.warn("{} webhook event is already being processed. eventId={}", provider, eventId);
+            return Outcome.IN_FLIGHT;
+        }
+        if (admission != WebhookIdempotencyGate.Admission.ACQUIRED) {
+            logger.warn("Duplicate {} webhook event received ({}). Skipping. eventId={}", provider, admission, eventId);
+            return Outcome.DUPLICATE;
+        }
+
+        try {
+            handler.run();
+            webhookEventRepository.save(new WebhookEvent(eventId, LocalDateTime.now()));
+            idempotencyGate.complete(provider, eventId);
+            return Outcome.PROCESSED;
+        } catch (Exception ex) {
+            logger.error("{} webhook processing failed: {}", provider, ex.getMessage());
+            webhookRetryTaskRepository.save(retryTask.get());
+            // Release the event instead of holding it until the lease expires
+            idempotencyGate.fail(provider, eventId);
+            paymentStatusService.recordProcessingFailure(provider, orderId, ex);
+            return Outcome.RETRY_QUEUED;
+        }
+    }
+
+    /**
+     * Parses a Stripe payload whose signature was already checked at ingress. Re-running
+     * {@code Webhook.constructEvent} here would fail once the signature timestamp is older
+     * than Stripe's tolerance window.
+     */
+    public static Event parseStripeEvent(String payload) {
+        return ApiResource.GSON.fromJson(payload, Event.class);
+    }
+
+    public static String stripeOrderId(Event event) {
+        try {
+            Optional<StripeObject> object = event.getDataObjectDeserializer().getObject();
+            if (object.isPresent() && object.get() instanceof Session session && session.getMetadata() != null) {
+                String orderId = session.getMetadata().get("orderId");
+                return orderId != null ? orderId.trim() : null;
+            }
+        } catch (Exception ex) {
+            logger.debug("Could not extract orderId from Stripe event {}: {}", event.getId(), ex.getMessage());
+        }
+        return null;
+    }
+
+    public static String razorpayOrderId(JSONObject jsonPayload) {
+        JSONObject inner = jsonPayload.optJSONObject("payload");
+        JSONObject paymentLink = inner != null ? inner.optJSONObject("payment_link") : null;
+        if (paymentLink == null) {
+            return null;
+        }
+        JSONObject entity = paymentLink.optJSONObject("entity");
+        String orderId = (entity != null ? entity : paymentLink).optString("reference_id", "").trim();
+        return orderId.isEmpty() ? null : orderId;
+    }
+}
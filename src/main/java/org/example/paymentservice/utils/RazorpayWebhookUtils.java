@@ -4,6 +4,11 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import org.apache.commons.codec.binary.Hex;
 
+/**
+ * @deprecated use {@link org.example.paymentservice.security.RazorpaySignatureVerifier}, which reuses
+ * initialized Macs, compares in constant time and accepts rotated secrets.
+ */
+@Deprecated
 public class RazorpayWebhookUtils {
 
     /**
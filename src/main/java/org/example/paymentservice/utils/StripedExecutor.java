@@ -0,0 +1,65 @@
+package org.example.paymentservice.utils;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+
+/**
+ * Fixed set of single-threaded lanes with bounded queues. Tasks submitted with the
+ * same key always run on the same lane, so they execute in submission order while
+ * different keys run in parallel.
+ */
+public class StripedExecutor {
+
+    private final ThreadPoolExecutor[] stripes;
+
+    public StripedExecutor(int stripeCount, int queueCapacityPerStripe, ThreadFactory threadFactory) {
+        if (stripeCount < 1 || queueCapacityPerStripe < 1) {
+            throw new IllegalArgumentException("stripeCount and queueCapacityPerStripe must be positive");
+        }
+        this.stripes = new ThreadPoolExecutor[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacityPerStripe), threadFactory,
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    /**
+     * @throws RejectedExecutionException when the lane for this key is full.
+     */
+    public void execute(Object key, Runnable task) {
+        stripes[stripeFor(key)].execute(task);
+    }
+
+    public int queueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            depth += stripe.getQueue().size();
+        }
+        return depth;
+    }
+
+    public int activeCount() {
+        int active = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            active += stripe.getActiveCount();
+        }
+        return active;
+    }
+
+    public void shutdown(Duration timeout) throws InterruptedException {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private int stripeFor(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h, stripes.length);
+    }
+}
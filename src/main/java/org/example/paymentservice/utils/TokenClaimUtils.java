@@ -1,9 +1,46 @@
 package org.example.paymentservice.utils;
 
 import org.example.paymentservice.dtos.TokenIntrospectionResponseDTO;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 public class TokenClaimUtils {
 
+    /**
+     * Builds the introspection view of a JWT that Spring Security has already validated,
+     * so scope and role checks need no call to auth-service.
+     */
+    public static TokenIntrospectionResponseDTO fromJwt(Jwt jwt) {
+        TokenIntrospectionResponseDTO dto = new TokenIntrospectionResponseDTO();
+        dto.setActive(true);
+        dto.setSub(jwt.getSubject());
+        dto.setEmail(jwt.getClaimAsString("email"));
+        dto.setRoles(claimAsList(jwt, "roles"));
+        List<String> scopes = claimAsList(jwt, "scopes");
+        if (scopes == null) scopes = claimAsList(jwt, "scp");
+        if (scopes == null) scopes = claimAsList(jwt, "scope");
+        dto.setScopes(scopes);
+        dto.setExp(jwt.getExpiresAt() != null ? jwt.getExpiresAt().getEpochSecond() : null);
+        return dto;
+    }
+
+    // Accepts both list claims and OAuth2-style space separated strings
+    private static List<String> claimAsList(Jwt jwt, String claim) {
+        Object value = jwt.getClaim(claim);
+        if (value instanceof Collection<?> values) {
+            List<String> result = new ArrayList<>(values.size());
+            values.forEach(v -> result.add(String.valueOf(v)));
+            return result;
+        }
+        if (value instanceof String str && !str.isBlank()) {
+            return new ArrayList<>(List.of(str.trim().split("\\s+")));
+        }
+        return null;
+    }
+
     public static boolean hasRole(TokenIntrospectionResponseDTO token, String role) {
         return token.getRoles() != null && token.getRoles().contains(role);
     }
@@ -0,0 +1,51 @@
+-- Schema as previously generated by spring.jpa.hibernate.ddl-auto=update.
+-- Existing databases are baselined at this version and skip it.
+
+CREATE TABLE payments (
+    id                  BIGINT       NOT NULL AUTO_INCREMENT,
+    created_at          DATETIME(6)  NOT NULL,
+    updated_at          DATETIME(6)  NOT NULL,
+    order_id            VARCHAR(255) NOT NULL,
+    user_id             VARCHAR(255) NOT NULL,
+    user_email          VARCHAR(255) NOT NULL,
+    payment_provider    VARCHAR(255) NOT NULL,
+    amount              BIGINT       NOT NULL,
+    currency            VARCHAR(255) NOT NULL,
+    status              VARCHAR(32)  NOT NULL,
+    external_payment_id VARCHAR(512),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE payment_audit_logs (
+    id                  BIGINT       NOT NULL AUTO_INCREMENT,
+    order_id            VARCHAR(255),
+    user_id             VARCHAR(255),
+    provider            VARCHAR(255),
+    amount              BIGINT,
+    currency            VARCHAR(255),
+    external_payment_id VARCHAR(255),
+    action              VARCHAR(255) NOT NULL,
+    timestamp           DATETIME(6)  NOT NULL,
+    details             VARCHAR(1024),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE webhook_events (
+    id           BIGINT       NOT NULL AUTO_INCREMENT,
+    event_id     VARCHAR(255) NOT NULL,
+    processed_at DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_webhook_events_event_id UNIQUE (event_id)
+);
+
+CREATE TABLE webhook_retry_tasks (
+    id            BIGINT       NOT NULL AUTO_INCREMENT,
+    provider      VARCHAR(255),
+    payload       VARCHAR(255),
+    signature     VARCHAR(255),
+    attempt_count INT          NOT NULL,
+    processed     BOOLEAN      NOT NULL,
+    created_at    DATETIME(6),
+    updated_at    DATETIME(6),
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,71 @@
+-- Tables and columns introduced for async webhook ingestion, the notification and event
+-- outboxes, leased webhook retries and the retry-topic dead letters.
+
+CREATE TABLE inbound_webhooks (
+    id            BIGINT        NOT NULL AUTO_INCREMENT,
+    provider      VARCHAR(255)  NOT NULL,
+    event_id      VARCHAR(255)  NOT NULL,
+    order_id      VARCHAR(255),
+    payload       TEXT          NOT NULL,
+    signature     VARCHAR(1024),
+    status        VARCHAR(32)   NOT NULL,
+    attempt_count INT           NOT NULL,
+    last_error    VARCHAR(1024),
+    received_at   DATETIME(6)   NOT NULL,
+    updated_at    DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_inbound_webhooks_provider_event UNIQUE (provider, event_id)
+);
+CREATE INDEX idx_inbound_webhooks_status_updated ON inbound_webhooks (status, updated_at, id);
+
+CREATE TABLE notification_outbox (
+    id              BIGINT        NOT NULL AUTO_INCREMENT,
+    dedup_key       VARCHAR(255)  NOT NULL,
+    recipient       VARCHAR(255)  NOT NULL,
+    subject         VARCHAR(255)  NOT NULL,
+    body            TEXT          NOT NULL,
+    status          VARCHAR(32)   NOT NULL,
+    attempt_count   INT           NOT NULL,
+    next_attempt_at DATETIME(6)   NOT NULL,
+    last_error      VARCHAR(1024),
+    created_at      DATETIME(6)   NOT NULL,
+    updated_at      DATETIME(6),
+    sent_at         DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_notification_outbox_dedup_key UNIQUE (dedup_key)
+);
+CREATE INDEX idx_notification_outbox_status_next ON notification_outbox (status, next_attempt_at, id);
+
+CREATE TABLE event_outbox (
+    id            BIGINT        NOT NULL AUTO_INCREMENT,
+    topic         VARCHAR(255)  NOT NULL,
+    message_key   VARCHAR(255),
+    event_type    VARCHAR(255)  NOT NULL,
+    payload       TEXT          NOT NULL,
+    created_at    DATETIME(6)   NOT NULL,
+    published_at  DATETIME(6),
+    lease_until   DATETIME(6),
+    attempt_count INT           NOT NULL,
+    last_error    VARCHAR(1024),
+    PRIMARY KEY (id)
+);
+CREATE INDEX idx_event_outbox_published ON event_outbox (published_at, id);
+CREATE INDEX idx_event_outbox_key_published ON event_outbox (message_key, published_at, id);
+
+-- "key" is a reserved word in MySQL, so the column is stored as message_key
+CREATE TABLE retry_dead_letter_logs (
+    id            BIGINT        NOT NULL AUTO_INCREMENT,
+    topic         VARCHAR(255),
+    message_key   VARCHAR(255),
+    payload       TEXT,
+    error_message VARCHAR(1024),
+    created_at    DATETIME(6),
+    PRIMARY KEY (id)
+);
+
+ALTER TABLE webhook_retry_tasks MODIFY COLUMN payload TEXT;
+ALTER TABLE webhook_retry_tasks MODIFY COLUMN signature VARCHAR(1024);
+ALTER TABLE webhook_retry_tasks ADD COLUMN dead_lettered BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE webhook_retry_tasks ADD COLUMN next_attempt_at DATETIME(6);
+ALTER TABLE webhook_retry_tasks ADD COLUMN lease_until DATETIME(6);
+ALTER TABLE webhook_retry_tasks ADD COLUMN last_error VARCHAR(1024);
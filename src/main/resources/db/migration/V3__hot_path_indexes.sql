@@ -0,0 +1,36 @@
+-- Indexes for the lookups on the payment hot path.
+
+-- Every webhook resolves its payment by order id; findByOrderId expects at most one row.
+-- Databases baselined at V1 can already hold duplicate order ids, which would abort the unique
+-- index. Per order id, keep the paid row (else the newest) and rename the others to
+-- '<order_id>#dup-<id>' so they stay available for manual reconciliation:
+--   SELECT * FROM payments WHERE order_id LIKE '%#dup-%';
+CREATE TABLE payments_order_id_duplicates AS
+SELECT p.id
+FROM payments p
+WHERE EXISTS (
+    SELECT 1 FROM payments k
+    WHERE k.order_id = p.order_id
+      AND k.id <> p.id
+      AND (CASE WHEN k.status IN ('SUCCEEDED', 'SUCCESS') THEN 1 ELSE 0 END
+               > CASE WHEN p.status IN ('SUCCEEDED', 'SUCCESS') THEN 1 ELSE 0 END
+           OR (CASE WHEN k.status IN ('SUCCEEDED', 'SUCCESS') THEN 1 ELSE 0 END
+                   = CASE WHEN p.status IN ('SUCCEEDED', 'SUCCESS') THEN 1 ELSE 0 END
+               AND k.id > p.id))
+);
+UPDATE payments SET order_id = CONCAT(order_id, '#dup-', id)
+WHERE id IN (SELECT id FROM payments_order_id_duplicates);
+DROP TABLE payments_order_id_duplicates;
+
+CREATE UNIQUE INDEX uk_payments_order_id ON payments (order_id);
+
+-- Expiry job: status = ? AND created_at < ? ORDER BY created_at, id
+CREATE INDEX idx_payments_status_created ON payments (status, created_at, id);
+
+-- Payment history: user_id = ? ORDER BY created_at DESC, id DESC
+CREATE INDEX idx_payments_user_created ON payments (user_id, created_at, id);
+
+-- Retry scheduler: processed = false AND dead_lettered = false AND next_attempt_at <= ?
+CREATE INDEX idx_webhook_retry_due ON webhook_retry_tasks (processed, dead_lettered, next_attempt_at, id);
+
+CREATE INDEX idx_audit_logs_order_ts ON payment_audit_logs (order_id, timestamp);
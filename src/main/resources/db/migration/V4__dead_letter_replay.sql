@@ -0,0 +1,31 @@
+-- Typed dead letters and checkpointed replay jobs.
+
+-- Simple class name of the event in payload (JSON); NULL for rows that cannot be replayed
+ALTER TABLE retry_dead_letter_logs ADD COLUMN payload_type VARCHAR(255);
+ALTER TABLE retry_dead_letter_logs ADD COLUMN replayed_at DATETIME(6);
+
+-- Replay scans: replayed_at IS NULL AND id > ? [AND topic = ?] [AND created_at range] ORDER BY id
+CREATE INDEX idx_dead_letters_replay ON retry_dead_letter_logs (replayed_at, id);
+CREATE INDEX idx_dead_letters_topic_created ON retry_dead_letter_logs (topic, created_at, id);
+CREATE INDEX idx_dead_letters_key ON retry_dead_letter_logs (message_key);
+
+CREATE TABLE dead_letter_replay_jobs (
+    id                BIGINT        NOT NULL AUTO_INCREMENT,
+    topic             VARCHAR(255),
+    message_key       VARCHAR(255),
+    from_time         DATETIME(6),
+    to_time           DATETIME(6),
+    rate_per_second   INT           NOT NULL,
+    parallelism       INT           NOT NULL,
+    status            VARCHAR(32)   NOT NULL,
+    last_processed_id BIGINT        NOT NULL,
+    replayed_count    BIGINT        NOT NULL,
+    failed_count      BIGINT        NOT NULL,
+    last_error        VARCHAR(1024),
+    lease_until       DATETIME(6),
+    requested_by      VARCHAR(255),
+    created_at        DATETIME(6)   NOT NULL,
+    updated_at        DATETIME(6)   NOT NULL,
+    PRIMARY KEY (id)
+);
+CREATE INDEX idx_replay_jobs_status ON dead_letter_replay_jobs (status, lease_until);
@@ -0,0 +1,3 @@
+-- Optimistic-lock version for payments (BaseModel.version); status changes also bump it
+-- from the conditional UPDATEs in PaymentRepository / PaymentBulkRepository.
+ALTER TABLE payments ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,2 @@
+-- Event-id filter catch-up walks webhook_events by (processed_at, id) from its watermark
+CREATE INDEX idx_webhook_events_processed ON webhook_events (processed_at, id);
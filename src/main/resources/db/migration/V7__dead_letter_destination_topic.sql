@@ -0,0 +1,8 @@
+-- Dead letters are now stored under the topic the event belongs on instead of the retry topic,
+-- and replays filter on it together with the replayed_at / id cursor.
+-- Backfill assumes the default topic names (topic.payment.success / topic.payment.failed).
+UPDATE retry_dead_letter_logs SET topic = 'payment.success' WHERE payload_type = 'PaymentEvent';
+UPDATE retry_dead_letter_logs SET topic = 'payment.failed' WHERE payload_type = 'PaymentFailedEvent';
+
+ALTER TABLE retry_dead_letter_logs DROP INDEX idx_dead_letters_topic_created;
+CREATE INDEX idx_dead_letters_topic_replay ON retry_dead_letter_logs (topic, replayed_at, id);
@@ -0,0 +1,4 @@
+-- Replays filtered by message key walk the same replayed_at / id cursor as the topic filter;
+-- with a key-only index the planner preferred the unfiltered replay index instead.
+ALTER TABLE retry_dead_letter_logs DROP INDEX idx_dead_letters_key;
+CREATE INDEX idx_dead_letters_key_replay ON retry_dead_letter_logs (message_key, replayed_at, id);
@@ -0,0 +1,141 @@
+package org.example.paymentservice.jobs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.paymentservice.configs.WorkerThreads;
+import org.example.paymentservice.kafka.PaymentEventOutbox;
+import org.example.paymentservice.kafka.PaymentEventPublisher;
+import org.example.paymentservice.models.DeadLetterReplayJob;
+import org.example.paymentservice.models.ReplayJobStatus;
+import org.example.paymentservice.models.RetryDeadLetterLog;
+import org.example.paymentservice.repositories.DeadLetterReplayJobRepository;
+import org.example.paymentservice.repositories.RetryDeadLetterLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class DeadLetterReplayRunnerTest {
+
+    private DeadLetterReplayJobRepository jobRepository;
+    private RetryDeadLetterLogRepository deadLetterRepository;
+    private PaymentEventPublisher publisher;
+    private PaymentEventOutbox paymentEventOutbox;
+    private DeadLetterReplayRunner runner;
+    private DeadLetterReplayJob job;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jobRepository = mock(DeadLetterReplayJobRepository.class);
+        deadLetterRepository = mock(RetryDeadLetterLogRepository.class);
+        publisher = mock(PaymentEventPublisher.class);
+        paymentEventOutbox = mock(PaymentEventOutbox.class);
+        runner = new DeadLetterReplayRunner(jobRepository, deadLetterRepository, publisher, paymentEventOutbox,
+                new WorkerThreads(false), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(runner, "enabled", true);
+        ReflectionTestUtils.setField(runner, "chunkSize", 2);
+        ReflectionTestUtils.setField(runner, "leaseMs", 60000L);
+        ReflectionTestUtils.setField(runner, "sendTimeoutMs", 5000L);
+
+        job = new DeadLetterReplayJob();
+        job.setId(1L);
+        job.setStatus(ReplayJobStatus.RUNNING);
+        job.setRatePerSecond(1000);
+        job.setParallelism(4);
+
+        when(jobRepository.findClaimable(eq(ReplayJobStatus.RUNNING), any())).thenReturn(List.of(1L));
+        when(jobRepository.lease(eq(1L), isNull(), any(), any())).thenReturn(1);
+        when(jobRepository.lease(eq(1L), notNull(), any(), any())).thenReturn(1);
+        when(jobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(paymentEventOutbox.deserialize(anyString(), anyString())).thenReturn(new Object());
+        when(publisher.republish(anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        runner.shutdown();
+    }
+
+    @Test
+    public void checkpointsEachChunkAndCompletes() {
+        chunks(0L, deadLetter(1L), deadLetter(2L));
+        chunks(2L, deadLetter(3L));
+        chunks(3L);
+
+        runner.runClaimableJobs();
+
+        verify(deadLetterRepository).markReplayed(eq(List.of(1L, 2L)), any());
+        verify(jobRepository).checkpoint(eq(1L), eq(2L), eq(2L), eq(0L), isNull(), any());
+        verify(jobRepository).checkpoint(eq(1L), eq(3L), eq(1L), eq(0L), isNull(), any());
+        verify(jobRepository).transition(eq(1L), eq(ReplayJobStatus.RUNNING), eq(ReplayJobStatus.COMPLETED), any());
+    }
+
+    @Test
+    public void resumesFromCheckpoint() {
+        job.setLastProcessedId(41L);
+        chunks(41L);
+
+        runner.runClaimableJobs();
+
+        verify(deadLetterRepository).findReplayChunk(eq(41L), isNull(), isNull(), isNull(), isNull(), any());
+        verify(publisher, never()).republish(anyString(), any());
+    }
+
+    @Test
+    public void countsFailedSendsAndOnlyMarksAcknowledgedRows() {
+        chunks(0L, deadLetter(1L), deadLetter(2L));
+        chunks(2L);
+        when(publisher.republish(eq("order-2"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        runner.runClaimableJobs();
+
+        verify(deadLetterRepository).markReplayed(eq(List.of(1L)), any());
+        verify(jobRepository).checkpoint(eq(1L), eq(2L), eq(1L), eq(1L), contains("broker down"), any());
+    }
+
+    @Test
+    public void pauseBetweenChunksStopsAfterCheckpoint() {
+        chunks(0L, deadLetter(1L), deadLetter(2L));
+        when(jobRepository.lease(eq(1L), notNull(), any(), any())).thenReturn(0);
+
+        runner.runClaimableJobs();
+
+        verify(jobRepository).checkpoint(eq(1L), eq(2L), eq(2L), eq(0L), isNull(), any());
+        verify(deadLetterRepository, never()).findReplayChunk(eq(2L), any(), any(), any(), any(), any());
+        verify(jobRepository, never()).transition(anyLong(), any(), eq(ReplayJobStatus.COMPLETED), any());
+    }
+
+    @Test
+    public void pauseMidChunkStopsSendingWhenLeaseRenewalFails() {
+        // Renewal is due before every send; a paused job cannot be renewed
+        ReflectionTestUtils.setField(runner, "leaseMs", 0L);
+        chunks(0L, deadLetter(1L), deadLetter(2L));
+        when(jobRepository.lease(eq(1L), notNull(), any(), any())).thenReturn(0);
+
+        runner.runClaimableJobs();
+
+        verify(publisher, never()).republish(anyString(), any());
+        verify(jobRepository, never()).checkpoint(anyLong(), anyLong(), anyLong(), anyLong(), any(), any());
+    }
+
+    private void chunks(long afterId, RetryDeadLetterLog... rows) {
+        when(deadLetterRepository.findReplayChunk(eq(afterId), isNull(), isNull(), isNull(), isNull(), any()))
+                .thenReturn(List.of(rows));
+    }
+
+    private static RetryDeadLetterLog deadLetter(long id) {
+        RetryDeadLetterLog log = new RetryDeadLetterLog();
+        log.setId(id);
+        log.setKey("order-" + id);
+        log.setPayloadType("PaymentEvent");
+        log.setPayload("{}");
+        return log;
+    }
+}
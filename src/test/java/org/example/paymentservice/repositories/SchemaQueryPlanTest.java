@@ -0,0 +1,106 @@
+package org.example.paymentservice.repositories;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Applies the Flyway migrations to an in-memory H2 database in MySQL mode and checks that
+ * the hot-path lookups are served by an index rather than a table scan.
+ */
+public class SchemaQueryPlanTest {
+
+    private static final String URL = "jdbc:h2:mem:query_plans;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void migrate() throws Exception {
+        Flyway.configure()
+                .dataSource(URL, "sa", "")
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        connection = DriverManager.getConnection(URL, "sa", "");
+    }
+
+    @AfterAll
+    static void close() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    public void findByOrderIdUsesUniqueIndex() throws Exception {
+        assertUsesIndex("SELECT * FROM payments WHERE order_id = 'order123'",
+                "uk_payments_order_id");
+    }
+
+    @Test
+    public void expiryScanUsesStatusCreatedIndex() throws Exception {
+        assertUsesIndex("SELECT id FROM payments WHERE status = 'LINK_CREATED' " +
+                        "AND created_at < TIMESTAMP '2030-01-01 00:00:00' ORDER BY created_at, id LIMIT 500",
+                "idx_payments_status_created");
+    }
+
+    @Test
+    public void paymentHistoryUsesUserCreatedIndex() throws Exception {
+        assertUsesIndex("SELECT * FROM payments WHERE user_id = 'user-1' ORDER BY created_at DESC, id DESC LIMIT 20",
+                "idx_payments_user_created");
+    }
+
+    @Test
+    public void retryClaimUsesDueIndex() throws Exception {
+        assertUsesIndex("SELECT id FROM webhook_retry_tasks WHERE processed = FALSE AND dead_lettered = FALSE " +
+                        "AND (next_attempt_at IS NULL OR next_attempt_at <= TIMESTAMP '2030-01-01 00:00:00') " +
+                        "ORDER BY next_attempt_at, id LIMIT 50",
+                "idx_webhook_retry_due");
+    }
+
+    @Test
+    public void auditLookupByOrderUsesIndex() throws Exception {
+        assertUsesIndex("SELECT * FROM payment_audit_logs WHERE order_id = 'order123'",
+                "idx_audit_logs_order_ts");
+    }
+
+    @Test
+    public void deadLetterReplayByKeyUsesIndex() throws Exception {
+        // On an empty table H2 costs every index alike and takes the (replayed_at, id) one, so give
+        // it the production shape first: many keys, most dead letters already replayed
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO retry_dead_letter_logs (topic, message_key, replayed_at, created_at) " +
+                    "SELECT 'payment.success', CONCAT('order', \"X\"), " +
+                    "CASE WHEN MOD(\"X\", 10) = 0 THEN NULL ELSE TIMESTAMP '2024-01-01 00:00:00' END, " +
+                    "TIMESTAMP '2024-01-01 00:00:00' FROM SYSTEM_RANGE(1, 1000)");
+            statement.execute("ANALYZE TABLE retry_dead_letter_logs");
+        }
+        assertUsesIndex("SELECT * FROM retry_dead_letter_logs WHERE message_key = 'order123' " +
+                        "AND replayed_at IS NULL AND id > 0 ORDER BY id LIMIT 200",
+                "idx_dead_letters_key_replay");
+    }
+
+    private static void assertUsesIndex(String query, String index) throws Exception {
+        String plan = explain(query).toLowerCase();
+        assertTrue(plan.contains(index), () -> "Expected " + index + " in plan: " + plan);
+        assertFalse(plan.contains("tablescan"), () -> "Unexpected table scan: " + plan);
+    }
+
+    private static String explain(String query) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN " + query)) {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString(1)).append('\n');
+            }
+            return plan.toString();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.paymentservice.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RazorpaySignatureVerifierTest {
+
+    private static final String PAYLOAD = "{\"event\":\"payment_link.paid\",\"payload\":{\"payment_link\":{\"entity\":{\"reference_id\":\"order_42\"}}}}";
+
+    private final RazorpaySignatureVerifier verifier =
+            new RazorpaySignatureVerifier("current-secret", List.of("old-secret", " "), 1, new SimpleMeterRegistry());
+
+    @Test
+    public void acceptsSignatureFromCurrentSecret() throws Exception {
+        assertTrue(verifier.verify(PAYLOAD, sign("current-secret", PAYLOAD)));
+    }
+
+    @Test
+    public void acceptsSignatureFromPreviousSecretDuringRotation() throws Exception {
+        assertTrue(verifier.verify(PAYLOAD, sign("old-secret", PAYLOAD)));
+    }
+
+    @Test
+    public void acceptsUppercaseHex() throws Exception {
+        assertTrue(verifier.verify(PAYLOAD, sign("current-secret", PAYLOAD).toUpperCase()));
+    }
+
+    @Test
+    public void rejectsUnknownSecretAndTamperedPayload() throws Exception {
+        assertFalse(verifier.verify(PAYLOAD, sign("someone-else", PAYLOAD)));
+        assertFalse(verifier.verify(PAYLOAD + " ", sign("current-secret", PAYLOAD)));
+    }
+
+    @Test
+    public void rejectsMalformedSignatures() {
+        assertFalse(verifier.verify(PAYLOAD, null));
+        assertFalse(verifier.verify(PAYLOAD, ""));
+        assertFalse(verifier.verify(PAYLOAD, "abc123"));
+        assertFalse(verifier.verify(PAYLOAD, "zz".repeat(32)));
+    }
+
+    @Test
+    public void staysCorrectAfterRejectedAttempts() throws Exception {
+        // With a pool of one, every call reuses the same Macs, which a mismatch must leave clean
+        assertFalse(verifier.verify(PAYLOAD, sign("someone-else", PAYLOAD)));
+        assertTrue(verifier.verify(PAYLOAD, sign("old-secret", PAYLOAD)));
+        assertTrue(verifier.verify(PAYLOAD, sign("current-secret", PAYLOAD)));
+    }
+
+    @Test
+    public void verifiesConcurrentlyBeyondPoolCapacity() throws Exception {
+        String signature = sign("current-secret", PAYLOAD);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(() -> verifier.verify(PAYLOAD, signature)));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        }
+    }
+
+    private static String sign(String secret, String payload) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return Hex.encodeHexString(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+}
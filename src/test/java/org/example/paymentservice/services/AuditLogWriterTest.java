@@ -0,0 +1,161 @@
+package org.example.paymentservice.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.paymentservice.configs.WorkerThreads;
+import org.example.paymentservice.models.PaymentAuditLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class AuditLogWriterTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private AuditLogWriter writer;
+    // Copies of each batchUpdate argument; the flusher reuses its batch list
+    private final List<List<PaymentAuditLog>> inserted = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        writer = new AuditLogWriter(jdbcTemplate, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new WorkerThreads(false), meterRegistry, 100);
+        ReflectionTestUtils.setField(writer, "moneyMovementDurability", AuditLogWriter.Durability.SYNC);
+        ReflectionTestUtils.setField(writer, "informationalDurability", AuditLogWriter.Durability.ASYNC);
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+        ReflectionTestUtils.setField(writer, "flushInterval", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(writer, "batchAttempts", 1);
+        ReflectionTestUtils.setField(writer, "retryBackoff", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(writer, "shutdownTimeout", Duration.ofMillis(100));
+
+        when(jdbcTemplate.batchUpdate(anyString(), anyLogs(), anyInt(), anySetter()))
+                .thenAnswer(invocation -> {
+                    Collection<PaymentAuditLog> batch = invocation.getArgument(1);
+                    List<PaymentAuditLog> logs = new ArrayList<>(batch);
+                    if (logs.stream().anyMatch(log -> "poison".equals(log.getAction()))) {
+                        throw new DataIntegrityViolationException("Data too long for column 'action'");
+                    }
+                    inserted.add(logs);
+                    return new int[][]{};
+                });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        writer.shutdown();
+    }
+
+    @Test
+    public void syncEntriesInTransactionAreInsertedInOneBatchBeforeCommit() {
+        writer.start();
+        PaymentAuditLog first = entry("order_1", "SUCCESS");
+        PaymentAuditLog second = entry("order_2", "REFUNDED");
+
+        TransactionSynchronizationManager.initSynchronization();
+        writer.write(first, AuditLogWriter.Category.MONEY_MOVEMENT);
+        writer.write(second, AuditLogWriter.Category.MONEY_MOVEMENT);
+        assertEquals(List.of(), inserted);
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.beforeCommit(false);
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        assertEquals(List.of(List.of(first, second)), inserted);
+    }
+
+    @Test
+    public void asyncEntriesFlushOnceBatchSizeIsReached() {
+        writer.start();
+        PaymentAuditLog first = entry("order_1", "CREATED");
+        PaymentAuditLog second = entry("order_2", "CREATED");
+
+        writer.write(first, AuditLogWriter.Category.INFORMATIONAL);
+        writer.write(second, AuditLogWriter.Category.INFORMATIONAL);
+
+        // Well inside the 5s interval, so only the batch size can have triggered it
+        verify(jdbcTemplate, timeout(1000))
+                .batchUpdate(anyString(), anyLogs(), anyInt(), anySetter());
+        assertEquals(List.of(List.of(first, second)), inserted);
+    }
+
+    @Test
+    public void asyncEntriesFlushAfterIntervalWithoutFullBatch() {
+        ReflectionTestUtils.setField(writer, "batchSize", 50);
+        ReflectionTestUtils.setField(writer, "flushInterval", Duration.ofMillis(50));
+        writer.start();
+        PaymentAuditLog only = entry("order_1", "CREATED");
+
+        writer.write(only, AuditLogWriter.Category.INFORMATIONAL);
+
+        verify(jdbcTemplate, timeout(2000))
+                .batchUpdate(anyString(), anyLogs(), anyInt(), anySetter());
+        assertEquals(List.of(List.of(only)), inserted);
+    }
+
+    @Test
+    public void failingBatchIsWrittenRowByRowAndPoisonRowIsRejected() {
+        writer.start();
+        PaymentAuditLog good = entry("order_1", "CREATED");
+        PaymentAuditLog poison = entry("order_2", "poison");
+        PaymentAuditLog later = entry("order_3", "CREATED");
+
+        writer.write(good, AuditLogWriter.Category.INFORMATIONAL);
+        writer.write(poison, AuditLogWriter.Category.INFORMATIONAL);
+        verify(jdbcTemplate, timeout(1000).times(3))
+                .batchUpdate(anyString(), anyLogs(), anyInt(), anySetter());
+
+        // The flusher moved on instead of retrying the poison row forever
+        writer.write(later, AuditLogWriter.Category.INFORMATIONAL);
+        writer.write(entry("order_4", "CREATED"), AuditLogWriter.Category.INFORMATIONAL);
+        verify(jdbcTemplate, timeout(1000).times(4))
+                .batchUpdate(anyString(), anyLogs(), anyInt(), anySetter());
+
+        assertEquals(List.of(good), inserted.get(0));
+        assertEquals(later, inserted.get(1).get(0));
+        assertEquals(1.0, meterRegistry.counter("audit.writer.rejected").count());
+    }
+
+    private static Collection<PaymentAuditLog> anyLogs() {
+        return any();
+    }
+
+    private static ParameterizedPreparedStatementSetter<PaymentAuditLog> anySetter() {
+        return any();
+    }
+
+    private static PaymentAuditLog entry(String orderId, String action) {
+        PaymentAuditLog log = new PaymentAuditLog();
+        log.setOrderId(orderId);
+        log.setUserId("user_1");
+        log.setProvider("stripe");
+        log.setAmount(1000L);
+        log.setCurrency("usd");
+        log.setAction(action);
+        log.setTimestamp(LocalDateTime.now());
+        return log;
+    }
+}
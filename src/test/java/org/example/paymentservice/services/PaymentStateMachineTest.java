@@ -0,0 +1,100 @@
+package org.example.paymentservice.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.paymentservice.models.Payment;
+import org.example.paymentservice.models.PaymentStatus;
+import org.example.paymentservice.repositories.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PaymentStateMachineTest {
+
+    private PaymentRepository paymentRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private PaymentStateMachine stateMachine;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository = mock(PaymentRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        stateMachine = new PaymentStateMachine(paymentRepository, meterRegistry, 8);
+    }
+
+    @Test
+    public void succeededIsTerminal() {
+        for (PaymentStatus next : PaymentStatus.values()) {
+            assertFalse(PaymentStatus.SUCCEEDED.canTransitionTo(next));
+        }
+        assertTrue(PaymentStatus.LINK_CREATED.canTransitionTo(PaymentStatus.SUCCEEDED));
+        assertTrue(PaymentStatus.FAILED.canTransitionTo(PaymentStatus.SUCCEEDED));
+    }
+
+    @Test
+    public void appliesAllowedTransitionWithCompareAndSet() {
+        when(paymentRepository.findByOrderId("order1")).thenReturn(payment(PaymentStatus.LINK_CREATED));
+        when(paymentRepository.compareAndSetStatus(eq("order1"), eq(PaymentStatus.LINK_CREATED),
+                eq(PaymentStatus.SUCCEEDED), eq("pay_1"), any())).thenReturn(1);
+
+        assertEquals(PaymentStateMachine.Result.APPLIED,
+                stateMachine.transition("order1", PaymentStatus.SUCCEEDED, "pay_1"));
+        assertEquals(1.0, count("applied"));
+    }
+
+    @Test
+    public void rejectsDuplicateWithoutWriting() {
+        when(paymentRepository.findByOrderId("order1")).thenReturn(payment(PaymentStatus.SUCCEEDED));
+
+        assertEquals(PaymentStateMachine.Result.REJECTED,
+                stateMachine.transition("order1", PaymentStatus.FAILED, null));
+        verify(paymentRepository, never()).compareAndSetStatus(anyString(), any(), any(), any(), any());
+        assertEquals(1.0, count("rejected"));
+    }
+
+    @Test
+    public void reportsConflictWhenStatusChangedUnderneath() {
+        when(paymentRepository.findByOrderId("order1")).thenReturn(payment(PaymentStatus.LINK_CREATED));
+        when(paymentRepository.compareAndSetStatus(anyString(), any(), any(), any(), any())).thenReturn(0);
+
+        assertEquals(PaymentStateMachine.Result.CONFLICT,
+                stateMachine.transition("order1", PaymentStatus.FAILED, null));
+        assertEquals(1.0, count("conflict"));
+    }
+
+    @Test
+    public void linkCreatedStoresGatewayIdOnlyWhileStillLinkCreated() {
+        when(paymentRepository.compareAndSetStatus(eq("order1"), eq(PaymentStatus.LINK_CREATED),
+                eq(PaymentStatus.LINK_CREATED), eq("plink_1"), any())).thenReturn(1);
+        when(paymentRepository.compareAndSetStatus(eq("order2"), eq(PaymentStatus.LINK_CREATED),
+                eq(PaymentStatus.LINK_CREATED), eq("plink_2"), any())).thenReturn(0);
+
+        assertEquals(PaymentStateMachine.Result.APPLIED, stateMachine.linkCreated("order1", "plink_1"));
+        // e.g. expiry already marked it FAILED
+        assertEquals(PaymentStateMachine.Result.CONFLICT, stateMachine.linkCreated("order2", "plink_2"));
+        assertEquals(1.0, count("applied"));
+        assertEquals(1.0, count("conflict"));
+    }
+
+    @Test
+    public void unknownOrderIsNotFound() {
+        assertEquals(PaymentStateMachine.Result.NOT_FOUND,
+                stateMachine.transition("missing", PaymentStatus.FAILED, null));
+    }
+
+    private double count(String result) {
+        return meterRegistry.find("payment.status.transitions").tag("result", result).counter().count();
+    }
+
+    private static Payment payment(PaymentStatus status) {
+        Payment payment = new Payment();
+        payment.setOrderId("order1");
+        payment.setStatus(status);
+        return payment;
+    }
+}
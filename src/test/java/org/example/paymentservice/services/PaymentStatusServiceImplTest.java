@@ -2,20 +2,24 @@ package org.example.paymentservice.services;
 
 import com.stripe.model.Event;
 import com.stripe.model.checkout.Session;
-import org.example.paymentservice.kafka.PaymentEventPublisher;
+import org.example.paymentservice.kafka.PaymentEventOutbox;
 import org.example.paymentservice.kafka.PaymentEvent;
+import org.example.paymentservice.kafka.PaymentFailedEvent;
 import org.example.paymentservice.models.Payment;
+import org.example.paymentservice.models.PaymentStatus;
 import org.example.paymentservice.repositories.PaymentRepository;
 import org.json.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 @SpringBootTest
@@ -28,7 +32,19 @@ public class PaymentStatusServiceImplTest {
     private PaymentRepository paymentRepository;
 
     @Mock
-    private PaymentEventPublisher paymentEventPublisher;
+    private PaymentEventOutbox paymentEventOutbox;
+
+    @Mock
+    private NotificationOutboxService notificationOutboxService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PaymentStateMachine paymentStateMachine;
+
+    @Mock
+    private AuditLogWriter auditLogWriter;
 
     @BeforeEach
     void setUp() {
@@ -52,11 +68,14 @@ public class PaymentStatusServiceImplTest {
         payment.setOrderId("order123");
 
         when(paymentRepository.findByOrderId("order123")).thenReturn(payment);
+        when(paymentStateMachine.transition("order123", PaymentStatus.SUCCEEDED, "sess_123"))
+                .thenReturn(PaymentStateMachine.Result.APPLIED);
 
         paymentStatusService.handleStripeCheckoutSessionCompleted(event);
 
-        verify(paymentRepository, times(1)).save(any(Payment.class));
-        verify(paymentEventPublisher, times(1)).publishPaymentSuccess(any(PaymentEvent.class));
+        verify(paymentStateMachine, times(1)).transition("order123", PaymentStatus.SUCCEEDED, "sess_123");
+        verify(paymentEventOutbox, times(1)).recordPaymentSuccess(any(PaymentEvent.class));
+        verify(eventPublisher, times(1)).publishEvent(any(PaymentStatusChangedEvent.class));
     }
 
     @Test
@@ -80,10 +99,27 @@ public class PaymentStatusServiceImplTest {
         payment.setOrderId("order456");
 
         when(paymentRepository.findByOrderId("order456")).thenReturn(payment);
+        when(paymentStateMachine.transition("order456", PaymentStatus.SUCCEEDED, "pay_456"))
+                .thenReturn(PaymentStateMachine.Result.APPLIED);
 
         paymentStatusService.handleRazorpayEvent(payload);
 
-        verify(paymentRepository, times(1)).save(any(Payment.class));
-        verify(paymentEventPublisher, times(1)).publishPaymentSuccess(any(PaymentEvent.class));
+        verify(paymentStateMachine, times(1)).transition("order456", PaymentStatus.SUCCEEDED, "pay_456");
+        verify(paymentEventOutbox, times(1)).recordPaymentSuccess(any(PaymentEvent.class));
+    }
+
+    @Test
+    public void testRecordProcessingFailure_publishesPaymentFailed() {
+        Payment payment = new Payment();
+        payment.setOrderId("order789");
+        payment.setUserId("user_1");
+        when(paymentRepository.findByOrderId("order789")).thenReturn(payment);
+
+        paymentStatusService.recordProcessingFailure("stripe", "order789", new IllegalStateException("db down"));
+
+        ArgumentCaptor<PaymentFailedEvent> captor = ArgumentCaptor.forClass(PaymentFailedEvent.class);
+        verify(paymentEventOutbox, times(1)).recordPaymentFailed(captor.capture());
+        assertEquals("user_1", captor.getValue().getUserId());
+        assertEquals("Exception during stripe processing: db down", captor.getValue().getFailureReason());
     }
-}
\ No newline at end of file
+}